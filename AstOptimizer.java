@@ -0,0 +1,421 @@
+import java.util.LinkedList;
+import java.util.Optional;
+
+//Rewrites a parsed program into a simpler one that does the same thing, before
+//it is interpreted. Operations on constants are folded into a single constant,
+//if statements, ternaries, loops, and pattern blocks whose condition is constant
+//are reduced to the part that can actually run, and x = x + 1 becomes ++x. A
+//value is only folded when the result can't depend on anything set at runtime:
+//a non-integral number is never turned into a string, since that depends on
+//CONVFMT, and an operation that would fail (such as dividing by zero) is left
+//for the interpreter to report.
+public class AstOptimizer {
+
+    // Only strings and integral numbers are ever compared as strings, and neither
+    // goes through CONVFMT, so any format does
+    private static final NumberConverter CONVERSION = new NumberConverter("%.6g");
+
+    // Optimizes every block and function of a program in place, and returns it
+    public ProgramNode optimize(ProgramNode program) {
+        optimizeBlocks(program.beginBlocks);
+        optimizeBlocks(program.blocks);
+        optimizeBlocks(program.endBlocks);
+        for (FunctionDefinitionNode function : program.funcDefNodes) {
+            optimizeStatements(function.getStatements());
+        }
+        return program;
+    }
+
+    // Optimizes a list of blocks; a block whose pattern is always false is
+    // dropped, and one whose pattern is always true runs for every line
+    private void optimizeBlocks(LinkedList<BlockNode> blocks) {
+        LinkedList<BlockNode> optimized = new LinkedList<BlockNode>();
+        for (BlockNode block : blocks) {
+            optimizeStatements(block.getStatements());
+            if (block.getCondition() == null) {
+                optimized.add(block);
+                continue;
+            }
+            Node condition = optimize(block.getCondition());
+            if (!isConstant(condition)) {
+                optimized.add(new BlockNode(block.getStatements(), Optional.of(condition)));
+            } else if (ExecNode.isTrue(value(condition))) {
+                optimized.add(new BlockNode(block.getStatements(), Optional.empty()));
+            }
+        }
+        blocks.clear();
+        blocks.addAll(optimized);
+    }
+
+    // Optimizes a list of statements in place
+    private void optimizeStatements(LinkedList<Node> statements) {
+        LinkedList<Node> optimized = new LinkedList<Node>();
+        for (Node statement : statements) {
+            optimizeStatement(statement, optimized);
+        }
+        statements.clear();
+        statements.addAll(optimized);
+    }
+
+    // Optimizes the statements of a block in place, and returns the block
+    private BlockNode optimizeBlock(BlockNode block) {
+        optimizeStatements(block.getStatements());
+        return block;
+    }
+
+    // Optimizes a statement, adding whatever is left of it to the list; a
+    // statement that can never run adds nothing, and an if statement whose
+    // condition is constant adds the statements of the branch that is taken
+    private void optimizeStatement(Node statement, LinkedList<Node> optimized) {
+
+        // =============IF=============
+        if (statement.getClass() == IfNode.class) {
+            IfNode ifNode = (IfNode) statement;
+            Node condition = optimize(ifNode.getCondition());
+            if (!isConstant(condition)) {
+                Node otherwise = optimizeElse(ifNode.getNext());
+                optimized.add(new IfNode(Optional.of(condition), optimizeBlock(ifNode.getBlock()),
+                        Optional.ofNullable(otherwise)));
+            } else if (ExecNode.isTrue(value(condition))) {
+                optimized.addAll(optimizeBlock(ifNode.getBlock()).getStatements());
+            } else if (ifNode.getNext() != null && ifNode.getNext().getClass() == BlockNode.class) {
+                optimized.addAll(optimizeBlock((BlockNode) ifNode.getNext()).getStatements());
+            } else if (ifNode.getNext() != null) {
+                optimizeStatement(ifNode.getNext(), optimized);
+            }
+        }
+
+        // =============WHILE=============
+        else if (statement.getClass() == WhileNode.class) {
+            WhileNode wNode = (WhileNode) statement;
+            Node condition = optimize(wNode.getCondition());
+            if (!isConstant(condition) || ExecNode.isTrue(value(condition))) {
+                optimized.add(new WhileNode(condition, optimizeBlock(wNode.getBlock())));
+            }
+        }
+
+        // =============DO-WHILE=============
+        else if (statement.getClass() == DoWhileNode.class) {
+            DoWhileNode dNode = (DoWhileNode) statement;
+            optimized.add(new DoWhileNode(optimize(dNode.getCondition()), optimizeBlock(dNode.getBlock())));
+        }
+
+        // =============FOR=============
+        // A loop that never runs still runs its initialization
+        else if (statement.getClass() == ForNode.class) {
+            ForNode forNode = (ForNode) statement;
+            Node init = optimize(forNode.getInit());
+            Node condition = optimize(forNode.getCondition());
+            if (isConstant(condition) && !ExecNode.isTrue(value(condition))) {
+                if (init != null) {
+                    optimized.add(init);
+                }
+                return;
+            }
+            optimized.add(new ForNode(Optional.ofNullable(init), Optional.ofNullable(condition),
+                    Optional.ofNullable(optimize(forNode.getInc())), optimizeBlock(forNode.getBlock())));
+        }
+
+        // =============FOR-IN=============
+        else if (statement.getClass() == ForInNode.class) {
+            ForInNode forIn = (ForInNode) statement;
+            optimized.add(new ForInNode(forIn.getCondition(), optimizeBlock(forIn.getBlock())));
+        }
+
+        // =============RETURN=============
+        else if (statement.getClass() == ReturnNode.class) {
+            optimized.add(new ReturnNode(Optional.ofNullable(optimize(((ReturnNode) statement).getValue()))));
+        }
+
+        else if (statement.getClass() == BlockNode.class) {
+            optimized.add(optimizeBlock((BlockNode) statement));
+        }
+
+        else if (statement.getClass() == BreakNode.class || statement.getClass() == ContinueNode.class
+                || statement.getClass() == DeleteNode.class) {
+            optimized.add(statement);
+        }
+
+        else {
+            optimized.add(optimize(statement));
+        }
+    }
+
+    // Optimizes the else part of an if statement, which is either a block or
+    // another if statement; returns null if there is nothing left of it
+    private Node optimizeElse(Node otherwise) {
+        if (otherwise == null) {
+            return null;
+        }
+        if (otherwise.getClass() == BlockNode.class) {
+            return optimizeBlock((BlockNode) otherwise);
+        }
+        IfNode ifNode = (IfNode) otherwise;
+        Node condition = optimize(ifNode.getCondition());
+        if (!isConstant(condition)) {
+            return new IfNode(Optional.of(condition), optimizeBlock(ifNode.getBlock()),
+                    Optional.ofNullable(optimizeElse(ifNode.getNext())));
+        }
+        if (ExecNode.isTrue(value(condition))) {
+            return optimizeBlock(ifNode.getBlock());
+        }
+        return optimizeElse(ifNode.getNext());
+    }
+
+    // Optimizes an expression, returning the expression to use in its place;
+    // null is accepted so optional parts of a node can be passed in directly
+    public Node optimize(Node node) {
+        if (node == null) {
+            return null;
+        }
+
+        // =============ASSIGNMENT=============
+        if (node.getClass() == AssignmentNode.class) {
+            AssignmentNode aNode = (AssignmentNode) node;
+            Node target = optimize(aNode.getLeft());
+            Node value = optimize(aNode.getRight());
+            OperationNode.Operations increment = increment(target, value);
+            if (increment != null) {
+                return new OperationNode(target, increment);
+            }
+            return new AssignmentNode(target, value);
+        }
+
+        // =============OPERATION=============
+        else if (node.getClass() == OperationNode.class) {
+            OperationNode oNode = (OperationNode) node;
+            Node left = optimize(oNode.getLeft());
+            if (oNode.getRight().isEmpty()) {
+                Node folded = fold(oNode.getOperation(), left);
+                return folded != null ? folded : new OperationNode(left, oNode.getOperation());
+            }
+            Node right = optimize(oNode.getRight().get());
+            Node folded = fold(oNode.getOperation(), left, right);
+            return folded != null ? folded : new OperationNode(left, oNode.getOperation(), Optional.of(right));
+        }
+
+        // =============TERNARY=============
+        else if (node.getClass() == TernaryNode.class) {
+            TernaryNode ternary = (TernaryNode) node;
+            Node condition = optimize(ternary.getCondition());
+            if (isConstant(condition)) {
+                return optimize(ExecNode.isTrue(value(condition)) ? ternary.getTrue() : ternary.getFalse());
+            }
+            return new TernaryNode(condition, optimize(ternary.getTrue()), optimize(ternary.getFalse()));
+        }
+
+        // =============VARIABLE=============
+        else if (node.getClass() == VariableReferenceNode.class) {
+            VariableReferenceNode variable = (VariableReferenceNode) node;
+            if (variable.getIndex() == null) {
+                return variable;
+            }
+            return new VariableReferenceNode(variable.getName(), Optional.of(optimize(variable.getIndex())));
+        }
+
+        // =============FUNCTION-CALL=============
+        else if (node.getClass() == FunctionCallNode.class) {
+            FunctionCallNode call = (FunctionCallNode) node;
+            LinkedList<Node> parameters = new LinkedList<Node>();
+            for (Node parameter : call.getParams()) {
+                parameters.add(optimize(parameter));
+            }
+            return new FunctionCallNode(call.getName(), parameters);
+        }
+
+        return node;
+    }
+
+    // Returns the increment that an assignment of the given value to the target
+    // does, or null if it does something else: x = x + 1 and x = 1 + x are
+    // ++x, and x = x - 1 is --x
+    private OperationNode.Operations increment(Node target, Node value) {
+        if (target.getClass() != VariableReferenceNode.class || value.getClass() != OperationNode.class) {
+            return null;
+        }
+        VariableReferenceNode variable = (VariableReferenceNode) target;
+        OperationNode operation = (OperationNode) value;
+        if (operation.getRight().isEmpty()) {
+            return null;
+        }
+        Node left = operation.getLeft();
+        Node right = operation.getRight().get();
+        if (operation.getOperation() == OperationNode.Operations.ADD) {
+            if (isOne(right) && sameVariable(variable, left) || isOne(left) && sameVariable(variable, right)) {
+                return OperationNode.Operations.PREINC;
+            }
+        } else if (operation.getOperation() == OperationNode.Operations.SUBTRACT) {
+            if (isOne(right) && sameVariable(variable, left)) {
+                return OperationNode.Operations.PREDEC;
+            }
+        }
+        return null;
+    }
+
+    // Returns true if the node is the number constant 1
+    private boolean isOne(Node node) {
+        return node.getClass() == ConstantNode.class && ((ConstantNode) node).isNumber()
+                && ((ConstantNode) node).getNumericValue() == 1;
+    }
+
+    // Returns true if two nodes refer to the same variable or array element. An
+    // element's index has to be a constant or a plain variable, so that working
+    // it out once instead of twice makes no difference.
+    private boolean sameVariable(VariableReferenceNode target, Node node) {
+        if (node.getClass() != VariableReferenceNode.class) {
+            return false;
+        }
+        VariableReferenceNode variable = (VariableReferenceNode) node;
+        if (!variable.getName().equals(target.getName())) {
+            return false;
+        }
+        Node targetIndex = target.getIndex();
+        Node index = variable.getIndex();
+        if (targetIndex == null || index == null) {
+            return targetIndex == index;
+        }
+        if (isConstant(targetIndex) && isConstant(index)) {
+            return ((ConstantNode) targetIndex).isNumber() == ((ConstantNode) index).isNumber()
+                    && ((ConstantNode) targetIndex).getValue().equals(((ConstantNode) index).getValue());
+        }
+        return targetIndex.getClass() == VariableReferenceNode.class && index.getClass() == VariableReferenceNode.class
+                && ((VariableReferenceNode) targetIndex).getIndex() == null
+                && ((VariableReferenceNode) index).getIndex() == null
+                && ((VariableReferenceNode) targetIndex).getName().equals(((VariableReferenceNode) index).getName());
+    }
+
+    // Folds a unary operation on a constant, returning null if it can't be folded
+    private Node fold(OperationNode.Operations operation, Node operand) {
+        if (!isConstant(operand)) {
+            return null;
+        }
+        InterpreterDataType value = value(operand);
+        switch (operation) {
+        case NOT:
+            return bool(!ExecNode.isTrue(value));
+        case UNARYNEG:
+            return new ConstantNode(-value.getNumber());
+        case UNARYPOS:
+            return new ConstantNode(value.getNumber());
+        default:
+            return null;
+        }
+    }
+
+    // Folds a binary operation, returning null if it can't be folded. && and ||
+    // fold as soon as their left side decides the result, like they do when run.
+    private Node fold(OperationNode.Operations operation, Node left, Node right) {
+        if (operation == OperationNode.Operations.AND && isConstant(left) && !ExecNode.isTrue(value(left))) {
+            return bool(false);
+        }
+        if (operation == OperationNode.Operations.OR && isConstant(left) && ExecNode.isTrue(value(left))) {
+            return bool(true);
+        }
+        if (!isConstant(left) || !isConstant(right)) {
+            return null;
+        }
+        InterpreterDataType leftValue = value(left);
+        InterpreterDataType rightValue = value(right);
+
+        switch (operation) {
+        case AND:
+        case OR:
+            return bool(ExecNode.isTrue(rightValue));
+        case EQ:
+        case NE:
+        case LT:
+        case LE:
+        case GT:
+        case GE:
+            // Values that aren't both numeric are compared as strings
+            if (!(leftValue.isNumeric() && rightValue.isNumeric())
+                    && !(isStable(leftValue) && isStable(rightValue))) {
+                return null;
+            }
+            return bool(holds(operation, ExecNode.compare(leftValue, rightValue, CONVERSION)));
+        case CONCATENATION:
+            if (!isStable(leftValue) || !isStable(rightValue)) {
+                return null;
+            }
+            return new ConstantNode(leftValue.get() + rightValue.get());
+        case ADD:
+            return number(leftValue.getNumber() + rightValue.getNumber());
+        case SUBTRACT:
+            return number(leftValue.getNumber() - rightValue.getNumber());
+        case MULTIPLY:
+            return number(leftValue.getNumber() * rightValue.getNumber());
+        case DIVIDE:
+            if (rightValue.getNumber() == 0) {
+                return null;
+            }
+            return number(leftValue.getNumber() / rightValue.getNumber());
+        case MODULO:
+            if (rightValue.getNumber() == 0) {
+                return null;
+            }
+            return number(leftValue.getNumber() % rightValue.getNumber());
+        case EXPONENT:
+            return number(Math.pow(leftValue.getNumber(), rightValue.getNumber()));
+        default:
+            return null;
+        }
+    }
+
+    // Returns true if the result of compare() satisfies the comparison
+    private boolean holds(OperationNode.Operations operation, int comparison) {
+        switch (operation) {
+        case EQ:
+            return comparison == 0;
+        case NE:
+            return comparison != 0;
+        case LT:
+            return comparison < 0;
+        case LE:
+            return comparison <= 0;
+        case GT:
+            return comparison > 0;
+        default:
+            return comparison >= 0;
+        }
+    }
+
+    // Returns a folded number, or null if it isn't finite; those are left to be
+    // worked out when the program runs
+    private Node number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return null;
+        }
+        return new ConstantNode(value);
+    }
+
+    // Returns the constant for the result of a comparison or boolean operation,
+    // which is the same value the interpreter uses for it
+    private Node bool(boolean value) {
+        return new ConstantNode(value ? 1 : 0);
+    }
+
+    private boolean isConstant(Node node) {
+        return node != null && node.getClass() == ConstantNode.class;
+    }
+
+    // Returns the value of a constant, made the same way the interpreter makes it
+    private InterpreterDataType value(Node node) {
+        ConstantNode constant = (ConstantNode) node;
+        if (constant.isNumber()) {
+            return new InterpreterDataType(constant.getNumericValue());
+        }
+        return new InterpreterDataType(constant.getValue());
+    }
+
+    // Returns true if the string of a value is known before the program runs:
+    // strings are, and so are integral numbers, which never go through CONVFMT
+    private boolean isStable(InterpreterDataType value) {
+        if (!value.isNumber()) {
+            return true;
+        }
+        double number = value.getNumber();
+        long integer = (long) number;
+        return integer == number && integer != Long.MAX_VALUE && integer != Long.MIN_VALUE;
+    }
+
+}
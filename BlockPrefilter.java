@@ -0,0 +1,222 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+//Decides, with one scan of a record, which of the main blocks can't possibly run
+//for it. A block whose condition matches a field against a pattern can only run
+//if the record contains the literal every match of the pattern contains; the
+//literals of all the blocks are built into one Aho-Corasick automaton, which
+//finds every one of them in a single pass over the record. A block whose literal
+//isn't there is skipped without its condition being evaluated at all. Blocks
+//without a literal always run.
+public class BlockPrefilter {
+
+    private static final int[] NO_LITERALS = new int[0];
+
+    // The literal each block needs, as an index into found, or -1 for none
+    private int[] blockLiterals;
+    private int literalCount;
+
+    // The automaton: the state after each state on each class of character, and
+    // the literals that end at each state. Characters that are in no literal
+    // are class 0.
+    private int[] transitions;
+    private int classCount;
+    private int[][] outputs;
+    private int[] asciiClasses;
+    private HashMap<Character, Integer> otherClasses;
+
+    // The record last scanned, and which literals it contains
+    private CharSequence scanned;
+    private boolean[] found;
+
+    private BlockPrefilter(int[] blockLiterals, ArrayList<String> literals) {
+        this.blockLiterals = blockLiterals;
+        literalCount = literals.size();
+        found = new boolean[literalCount];
+        build(literals);
+    }
+
+    // Makes the prefilter for the main blocks of a program, or returns null if
+    // no block has a literal to look for
+    public static BlockPrefilter forBlocks(LinkedList<BlockNode> blocks) {
+        int[] blockLiterals = new int[blocks.size()];
+        ArrayList<String> literals = new ArrayList<>();
+        HashMap<String, Integer> indices = new HashMap<>();
+        int i = 0;
+        for (BlockNode block : blocks) {
+            String literal = requiredLiteral(block.getCondition());
+            if (literal == null) {
+                blockLiterals[i++] = -1;
+                continue;
+            }
+            Integer index = indices.get(literal);
+            if (index == null) {
+                index = literals.size();
+                indices.put(literal, index);
+                literals.add(literal);
+            }
+            blockLiterals[i++] = index;
+        }
+        return literals.isEmpty() ? null : new BlockPrefilter(blockLiterals, literals);
+    }
+
+    // Returns the literal a condition can't be true without the record containing,
+    // or null. Only a field with a constant index matched against a pattern
+    // counts, as every field is part of the record, and in a chain of &&s only
+    // the first, as nothing that could have side effects is evaluated before it.
+    private static String requiredLiteral(Node condition) {
+        if (condition == null || condition.getClass() != OperationNode.class) {
+            return null;
+        }
+        OperationNode operation = (OperationNode) condition;
+        if (operation.getOperation() == OperationNode.Operations.AND) {
+            return requiredLiteral(operation.getLeft());
+        }
+        if (operation.getOperation() != OperationNode.Operations.MATCH || !operation.getRight().isPresent()
+                || operation.getRight().get().getClass() != PatternNode.class) {
+            return null;
+        }
+        Node field = operation.getLeft();
+        if (field.getClass() != OperationNode.class
+                || ((OperationNode) field).getOperation() != OperationNode.Operations.DOLLAR) {
+            return null;
+        }
+        Node index = ((OperationNode) field).getLeft();
+        if (index.getClass() != ConstantNode.class
+                || new InterpreterDataType(((ConstantNode) index).getValue()).getNumber() < 0) {
+            return null;
+        }
+        return ((PatternNode) operation.getRight().get()).getRegex().getRequiredLiteral();
+    }
+
+    // Returns false if block i can't run for the record; a null record, one
+    // that has fields assigned and hasn't been rebuilt yet, lets every block run
+    public boolean mayRun(int block, CharSequence record) {
+        int literal = blockLiterals[block];
+        if (literal < 0 || record == null) {
+            return true;
+        }
+        if (record != scanned) {
+            scan(record);
+        }
+        return found[literal];
+    }
+
+    // Finds which literals the record contains, stopping once all have been seen
+    private void scan(CharSequence record) {
+        Arrays.fill(found, false);
+        int remaining = literalCount;
+        int state = 0;
+        int length = record.length();
+        for (int i = 0; i < length && remaining > 0; i++) {
+            char c = record.charAt(i);
+            state = transitions[state * classCount + (c < 128 ? asciiClasses[c] : otherClass(c))];
+            for (int literal : outputs[state]) {
+                if (!found[literal]) {
+                    found[literal] = true;
+                    remaining--;
+                }
+            }
+        }
+        scanned = record;
+    }
+
+    private int otherClass(char c) {
+        Integer characterClass = otherClasses.get(c);
+        return characterClass == null ? 0 : characterClass;
+    }
+
+    // ----------AUTOMATON----------
+
+    // Builds the trie of the literals, then follows it breadth first, giving each
+    // state the transitions of its failure state - the state for the longest
+    // proper suffix of its string - wherever it has none of its own, and the
+    // literals that end there
+    private void build(ArrayList<String> literals) {
+        asciiClasses = new int[128];
+        otherClasses = new HashMap<>();
+        classCount = 1;
+        for (String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (c < 128 ? asciiClasses[c] == 0 : !otherClasses.containsKey(c)) {
+                    if (c < 128) {
+                        asciiClasses[c] = classCount++;
+                    } else {
+                        otherClasses.put(c, classCount++);
+                    }
+                }
+            }
+        }
+
+        ArrayList<int[]> trie = new ArrayList<>();
+        ArrayList<int[]> ends = new ArrayList<>();
+        trie.add(newState());
+        ends.add(NO_LITERALS);
+        for (int literal = 0; literal < literals.size(); literal++) {
+            String text = literals.get(literal);
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                int characterClass = c < 128 ? asciiClasses[c] : otherClass(c);
+                if (trie.get(state)[characterClass] < 0) {
+                    trie.get(state)[characterClass] = trie.size();
+                    trie.add(newState());
+                    ends.add(NO_LITERALS);
+                }
+                state = trie.get(state)[characterClass];
+            }
+            ends.set(state, append(ends.get(state), literal));
+        }
+
+        int[] failures = new int[trie.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int[] root = trie.get(0);
+        for (int c = 0; c < classCount; c++) {
+            if (root[c] < 0) {
+                root[c] = 0;
+            } else {
+                queue.add(root[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] row = trie.get(state);
+            int[] failureRow = trie.get(failures[state]);
+            for (int c = 0; c < classCount; c++) {
+                if (row[c] < 0) {
+                    row[c] = failureRow[c];
+                } else {
+                    int next = row[c];
+                    failures[next] = failureRow[c];
+                    for (int literal : ends.get(failures[next])) {
+                        ends.set(next, append(ends.get(next), literal));
+                    }
+                    queue.add(next);
+                }
+            }
+        }
+
+        transitions = new int[trie.size() * classCount];
+        for (int state = 0; state < trie.size(); state++) {
+            System.arraycopy(trie.get(state), 0, transitions, state * classCount, classCount);
+        }
+        outputs = ends.toArray(new int[0][]);
+    }
+
+    private int[] newState() {
+        int[] row = new int[classCount];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int[] append(int[] literals, int literal) {
+        int[] result = Arrays.copyOf(literals, literals.length + 1);
+        result[literals.length] = literal;
+        return result;
+    }
+
+}
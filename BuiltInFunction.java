@@ -0,0 +1,30 @@
+//The implementation of a built-in function. Arguments are passed by position,
+//with an entry point for each common number of arguments, so a call like
+//length($1) or substr(s, a, b) needs no map or array to pass them in, and the
+//result comes back as a value instead of a String. A built-in overrides the entry
+//points for the numbers of arguments it takes; the others end up in callN(),
+//which a variadic built-in overrides and which otherwise rejects the call.
+public abstract class BuiltInFunction {
+
+    public InterpreterDataType call0() throws Exception {
+        return callN(new InterpreterDataType[0]);
+    }
+
+    public InterpreterDataType call1(InterpreterDataType first) throws Exception {
+        return callN(new InterpreterDataType[] { first });
+    }
+
+    public InterpreterDataType call2(InterpreterDataType first, InterpreterDataType second) throws Exception {
+        return callN(new InterpreterDataType[] { first, second });
+    }
+
+    public InterpreterDataType call3(InterpreterDataType first, InterpreterDataType second,
+            InterpreterDataType third) throws Exception {
+        return callN(new InterpreterDataType[] { first, second, third });
+    }
+
+    public InterpreterDataType callN(InterpreterDataType[] arguments) throws Exception {
+        throw new Exception("Invalid number of parameters passed to built-in function");
+    }
+
+}
@@ -1,6 +1,4 @@
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.function.Function;
 
 public class BuiltInFunctionDefinitionNode extends FunctionDefinitionNode {
 
@@ -16,7 +14,7 @@ public class BuiltInFunctionDefinitionNode extends FunctionDefinitionNode {
         return variadic;
     }
 
-    public Function<HashMap<String, InterpreterDataType>, String> execute;
+    public BuiltInFunction execute;
 
     public String toString() {
         return super.toString() + " " + variadic;
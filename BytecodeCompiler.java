@@ -0,0 +1,641 @@
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+//Compiles the blocks and functions of a program into JVM bytecode, loaded as
+//hidden classes, so that HotSpot optimizes AWK code the same way it does Java.
+//Each block and each function becomes a CompiledNode whose run() does the work of
+//the whole block. Control flow, variables, constant fields, arithmetic,
+//comparisons, and concatenation are compiled; arithmetic is done on doubles on
+//the JVM stack and conditions on ints, so only values that are stored or passed
+//on are ever made. Any other expression or statement is built by ExecNodeBuilder
+//and called from the compiled code, and a block or function that can't be
+//compiled at all (one too large for a class file, say) is run as a tree.
+public class BytecodeCompiler {
+
+    // Internal names and descriptors of the classes the compiled code uses
+    private static final String COMPILED = "CompiledNode";
+    private static final String EXEC = "ExecNode";
+    private static final String INTERPRETER = "Interpreter";
+    private static final String HANDLER = "Interpreter$LineHandler";
+    private static final String VALUE = "InterpreterDataType";
+    private static final String RETURN = "ReturnType";
+    private static final String VALUE_TYPE = "LInterpreterDataType;";
+    private static final String RETURN_TYPE = "LReturnType;";
+    private static final String CONVERTER_TYPE = "LNumberConverter;";
+    private static final String CONSTRUCTOR = "(LInterpreter;[LExecNode;[LInterpreterDataType;)V";
+
+    // Local variable 1 of run() holds the interpreter
+    private static final int INTERPRETER_LOCAL = 1;
+
+    private Interpreter interpreter;
+    private ExecNodeBuilder builder;
+
+    // The state of the class being compiled
+    private BytecodeWriter.Code code;
+    private ArrayList<ExecNode> fallbacks;
+    private ArrayList<InterpreterDataType> constants;
+
+    // Where break and continue go in the innermost loop being compiled
+    private static class Loop {
+
+        private BytecodeWriter.Label breakLabel;
+        private BytecodeWriter.Label continueLabel;
+
+        private Loop(BytecodeWriter.Label breakLabel, BytecodeWriter.Label continueLabel) {
+            this.breakLabel = breakLabel;
+            this.continueLabel = continueLabel;
+        }
+    }
+
+    public BytecodeCompiler(Interpreter interpreter, ExecNodeBuilder builder) {
+        this.interpreter = interpreter;
+        this.builder = builder;
+    }
+
+    // Compiles the pattern-action blocks of one section of the program
+    public ExecNode[] compileBlocks(LinkedList<BlockNode> blocks) throws Exception {
+        ExecNode[] compiled = new ExecNode[blocks.size()];
+        int i = 0;
+        for (BlockNode block : blocks) {
+            ExecNode node = compile(block.getCondition(), block.getStatements());
+            compiled[i++] = node == null ? builder.buildBlock(block) : node;
+        }
+        return compiled;
+    }
+
+    // Replaces the bodies the builder made for the program's functions with
+    // compiled ones
+    public void compileFunctions(HashMap<String, FunctionDefinitionNode> functions) throws Exception {
+        for (FunctionDefinitionNode definition : functions.values()) {
+            if (definition.getClass() == FunctionDefinitionNode.class) {
+                ExecNode node = compile(null, definition.getStatements());
+                if (node != null) {
+                    builder.getFunction(definition.getName()).setBody(node);
+                }
+            }
+        }
+    }
+
+    // Compiles a condition (or null) and the statements it guards into a new
+    // class, and returns an instance of it; returns null if the class couldn't
+    // be made, so the caller can use the tree instead
+    private ExecNode compile(Node condition, LinkedList<Node> statements) throws Exception {
+        fallbacks = new ArrayList<>();
+        constants = new ArrayList<>();
+        BytecodeWriter writer = new BytecodeWriter("CompiledCode", COMPILED);
+        byte[] bytes;
+        try {
+            BytecodeWriter.Code constructor = writer.addMethod(BytecodeWriter.PUBLIC, "<init>", CONSTRUCTOR, 4);
+            constructor.local(BytecodeWriter.ALOAD, 0);
+            constructor.local(BytecodeWriter.ALOAD, 1);
+            constructor.local(BytecodeWriter.ALOAD, 2);
+            constructor.local(BytecodeWriter.ALOAD, 3);
+            constructor.invoke(BytecodeWriter.INVOKESPECIAL, COMPILED, "<init>", CONSTRUCTOR);
+            constructor.op(BytecodeWriter.RETURN, 0);
+            constructor.end();
+
+            code = writer.addMethod(BytecodeWriter.PUBLIC, "run", "()" + RETURN_TYPE, 1);
+            code.newLocal(false);
+            code.local(BytecodeWriter.ALOAD, 0);
+            code.field(BytecodeWriter.GETFIELD, COMPILED, "interpreter", "LInterpreter;");
+            code.local(BytecodeWriter.ASTORE, INTERPRETER_LOCAL);
+            BytecodeWriter.Label end = new BytecodeWriter.Label();
+            if (condition != null) {
+                compileCondition(condition);
+                code.jump(BytecodeWriter.IFEQ, end);
+            }
+            compileStatements(statements, null);
+            code.mark(end);
+            code.invoke(BytecodeWriter.INVOKESTATIC, COMPILED, "none", "()" + RETURN_TYPE);
+            code.op(BytecodeWriter.ARETURN, -1);
+            code.end();
+            bytes = writer.toByteArray();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+
+        Class<?> compiled = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+        return (ExecNode) compiled.getConstructor(Interpreter.class, ExecNode[].class, InterpreterDataType[].class)
+                .newInstance(interpreter, fallbacks.toArray(new ExecNode[0]),
+                        constants.toArray(new InterpreterDataType[0]));
+    }
+
+    // ----------STATEMENTS----------
+    // Statements leave the stack empty
+
+    private void compileStatements(LinkedList<Node> statements, Loop loop) throws Exception {
+        for (Node statement : statements) {
+            compileStatement(statement, loop);
+        }
+    }
+
+    private void compileStatement(Node statement, Loop loop) throws Exception {
+
+        // =============BREAK/CONTINUE=============
+        // Outside of a loop they leave the block, as they do in the tree
+        if (statement.getClass() == BreakNode.class || statement.getClass() == ContinueNode.class) {
+            boolean isBreak = statement.getClass() == BreakNode.class;
+            if (loop != null) {
+                code.jump(BytecodeWriter.GOTO, isBreak ? loop.breakLabel : loop.continueLabel);
+            } else {
+                code.pushInt(isBreak ? 1 : 0);
+                code.invoke(BytecodeWriter.INVOKESTATIC, COMPILED, "jump", "(Z)" + RETURN_TYPE);
+                code.op(BytecodeWriter.ARETURN, -1);
+            }
+        }
+
+        // =============IF=============
+        else if (statement.getClass() == IfNode.class) {
+            IfNode ifNode = (IfNode) statement;
+            BytecodeWriter.Label otherwise = new BytecodeWriter.Label();
+            BytecodeWriter.Label end = new BytecodeWriter.Label();
+            compileCondition(ifNode.getCondition());
+            code.jump(BytecodeWriter.IFEQ, otherwise);
+            compileStatements(ifNode.getBlock().getStatements(), loop);
+            code.jump(BytecodeWriter.GOTO, end);
+            code.mark(otherwise);
+            if (ifNode.getNext() != null && ifNode.getNext().getClass() == BlockNode.class) {
+                compileStatements(((BlockNode) ifNode.getNext()).getStatements(), loop);
+            } else if (ifNode.getNext() != null) {
+                compileStatement(ifNode.getNext(), loop);
+            }
+            code.mark(end);
+        }
+
+        // =============WHILE=============
+        else if (statement.getClass() == WhileNode.class) {
+            WhileNode wNode = (WhileNode) statement;
+            BytecodeWriter.Label condition = new BytecodeWriter.Label();
+            BytecodeWriter.Label end = new BytecodeWriter.Label();
+            code.mark(condition);
+            compileCondition(wNode.getCondition());
+            code.jump(BytecodeWriter.IFEQ, end);
+            compileStatements(wNode.getBlock().getStatements(), new Loop(end, condition));
+            code.jump(BytecodeWriter.GOTO, condition);
+            code.mark(end);
+        }
+
+        // =============DO=WHILE=============
+        else if (statement.getClass() == DoWhileNode.class) {
+            DoWhileNode dwNode = (DoWhileNode) statement;
+            BytecodeWriter.Label body = new BytecodeWriter.Label();
+            BytecodeWriter.Label condition = new BytecodeWriter.Label();
+            BytecodeWriter.Label end = new BytecodeWriter.Label();
+            code.mark(body);
+            compileStatements(dwNode.getBlock().getStatements(), new Loop(end, condition));
+            code.mark(condition);
+            compileCondition(dwNode.getCondition());
+            code.jump(BytecodeWriter.IFNE, body);
+            code.mark(end);
+        }
+
+        // =============FOR=============
+        else if (statement.getClass() == ForNode.class) {
+            ForNode fNode = (ForNode) statement;
+            BytecodeWriter.Label condition = new BytecodeWriter.Label();
+            BytecodeWriter.Label increment = new BytecodeWriter.Label();
+            BytecodeWriter.Label end = new BytecodeWriter.Label();
+            if (fNode.getInit() != null) {
+                compileStatement(fNode.getInit(), loop);
+            }
+            code.mark(condition);
+            if (fNode.getCondition() != null) {
+                compileCondition(fNode.getCondition());
+                code.jump(BytecodeWriter.IFEQ, end);
+            }
+            compileStatements(fNode.getBlock().getStatements(), new Loop(end, increment));
+            code.mark(increment);
+            if (fNode.getInc() != null) {
+                compileStatement(fNode.getInc(), loop);
+            }
+            code.jump(BytecodeWriter.GOTO, condition);
+            code.mark(end);
+        }
+
+        // =============RETURN=============
+        else if (statement.getClass() == ReturnNode.class) {
+            Node value = ((ReturnNode) statement).getValue();
+            code.local(BytecodeWriter.ALOAD, INTERPRETER_LOCAL);
+            if (value == null) {
+                code.op(BytecodeWriter.ACONST_NULL, 1);
+            } else {
+                compileValue(value);
+            }
+            code.invoke(BytecodeWriter.INVOKESTATIC, COMPILED, "returnValue", "(LInterpreter;" + VALUE_TYPE + ")"
+                    + RETURN_TYPE);
+            code.op(BytecodeWriter.ARETURN, -1);
+        }
+
+        else if (statement.getClass() == BlockNode.class) {
+            compileStatements(((BlockNode) statement).getStatements(), loop);
+        }
+
+        // =============FALLBACK-STATEMENTS=============
+        // for-in, delete, next, nextfile and exit run from the tree; if one doesn't
+        // carry on, neither does the compiled code
+        else if (statement.getClass() == ForInNode.class || statement.getClass() == DeleteNode.class
+                || ExecNodeBuilder.isJump(statement)) {
+            BytecodeWriter.Label next = new BytecodeWriter.Label();
+            int type = code.newLocal(false);
+            loadFallback(builder.buildStatement(statement));
+            code.invoke(BytecodeWriter.INVOKEVIRTUAL, EXEC, "run", "()" + RETURN_TYPE);
+            code.local(BytecodeWriter.ASTORE, type);
+            code.local(BytecodeWriter.ALOAD, type);
+            code.invoke(BytecodeWriter.INVOKESTATIC, COMPILED, "isNone", "(" + RETURN_TYPE + ")Z");
+            code.jump(BytecodeWriter.IFNE, next);
+            code.local(BytecodeWriter.ALOAD, type);
+            code.op(BytecodeWriter.ARETURN, -1);
+            code.mark(next);
+        }
+
+        // =============EXPRESSION=============
+        else {
+            compileValue(statement);
+            code.op(BytecodeWriter.POP, -1);
+        }
+    }
+
+    // ----------EXPRESSIONS----------
+
+    // Leaves the value of an expression on the stack
+    private void compileValue(Node node) throws Exception {
+
+        // =============CONSTANT=============
+        if (node.getClass() == ConstantNode.class) {
+            loadConstant(constant((ConstantNode) node));
+        }
+
+        // =============VARIABLE-REFERENCE=============
+        else if (node.getClass() == VariableReferenceNode.class && ((VariableReferenceNode) node).getIndex() == null) {
+            loadVariable((VariableReferenceNode) node);
+        }
+
+        // =============ASSIGNMENT=============
+        // Only plain variables; the value is worked out before the variable's slot
+        // is looked up, since a function call can move the stack
+        else if (node.getClass() == AssignmentNode.class
+                && ((AssignmentNode) node).getLeft().getClass() == VariableReferenceNode.class
+                && ((VariableReferenceNode) ((AssignmentNode) node).getLeft()).getIndex() == null) {
+            AssignmentNode aNode = (AssignmentNode) node;
+            int value = code.newLocal(false);
+            compileValue(aNode.getRight());
+            code.local(BytecodeWriter.ASTORE, value);
+            storeVariable((VariableReferenceNode) aNode.getLeft(), value);
+            code.local(BytecodeWriter.ALOAD, value);
+        }
+
+        else if (node.getClass() == OperationNode.class) {
+            compileOperation((OperationNode) node);
+        }
+
+        else {
+            loadFallback(builder.build(node));
+            code.invoke(BytecodeWriter.INVOKEVIRTUAL, EXEC, "execute", "()" + VALUE_TYPE);
+        }
+    }
+
+    private void compileOperation(OperationNode oNode) throws Exception {
+        OperationNode.Operations op = oNode.getOperation();
+
+        // ----------NUMBERS----------
+        if (producesNumber(oNode) && !isIncrement(op)) {
+            compileNumber(oNode);
+            code.invoke(BytecodeWriter.INVOKESTATIC, COMPILED, "number", "(D)" + VALUE_TYPE);
+        }
+
+        // ----------CONDITIONS----------
+        else if (isCondition(oNode)) {
+            compileCondition(oNode);
+            code.invoke(BytecodeWriter.INVOKESTATIC, EXEC, "bool", "(Z)" + VALUE_TYPE);
+        }
+
+        // ----------CONCATENATION----------
+        else if (op == OperationNode.Operations.CONCATENATION) {
+            compileString(oNode);
+            code.invoke(BytecodeWriter.INVOKESTATIC, COMPILED, "string", "(Ljava/lang/String;)" + VALUE_TYPE);
+        }
+
+        // ----------FIELDS----------
+        else if (op == OperationNode.Operations.DOLLAR) {
+            if (oNode.getLeft().getClass() == ConstantNode.class) {
+                int index = ExecNode.fieldIndex(constant((ConstantNode) oNode.getLeft()));
+                loadHandler();
+                code.pushInt(index);
+            } else {
+                compileValue(oNode.getLeft());
+                code.invoke(BytecodeWriter.INVOKESTATIC, EXEC, "fieldIndex", "(" + VALUE_TYPE + ")I");
+                loadHandler();
+                code.op(BytecodeWriter.SWAP, 0);
+            }
+            code.invoke(BytecodeWriter.INVOKEVIRTUAL, HANDLER, "getField", "(I)" + VALUE_TYPE);
+        }
+
+        // ----------INCREMENT/DECREMENT----------
+        // Of plain variables; the pre- forms return the new value and the post- forms
+        // the value from before
+        else if (isIncrement(op) && oNode.getLeft().getClass() == VariableReferenceNode.class
+                && ((VariableReferenceNode) oNode.getLeft()).getIndex() == null) {
+            VariableReferenceNode variable = (VariableReferenceNode) oNode.getLeft();
+            boolean post = op == OperationNode.Operations.POSTINC || op == OperationNode.Operations.POSTDEC;
+            int old = code.newLocal(true);
+            int result = code.newLocal(false);
+            loadVariable(variable);
+            code.invoke(BytecodeWriter.INVOKEVIRTUAL, VALUE, "getNumber", "()D");
+            code.local(BytecodeWriter.DSTORE, old);
+            code.local(BytecodeWriter.DLOAD, old);
+            code.op(BytecodeWriter.DCONST_1, 2);
+            code.op(op == OperationNode.Operations.PREINC || op == OperationNode.Operations.POSTINC
+                    ? BytecodeWriter.DADD : BytecodeWriter.DSUB, -2);
+            code.invoke(BytecodeWriter.INVOKESTATIC, COMPILED, "number", "(D)" + VALUE_TYPE);
+            code.local(BytecodeWriter.ASTORE, result);
+            storeVariable(variable, result);
+            if (post) {
+                code.local(BytecodeWriter.DLOAD, old);
+                code.invoke(BytecodeWriter.INVOKESTATIC, COMPILED, "number", "(D)" + VALUE_TYPE);
+            } else {
+                code.local(BytecodeWriter.ALOAD, result);
+            }
+        }
+
+        else {
+            loadFallback(builder.build(oNode));
+            code.invoke(BytecodeWriter.INVOKEVIRTUAL, EXEC, "execute", "()" + VALUE_TYPE);
+        }
+    }
+
+    // Leaves the numeric value of an expression on the stack, as a double
+    private void compileNumber(Node node) throws Exception {
+        if (node.getClass() == ConstantNode.class) {
+            code.pushDouble(constant((ConstantNode) node).getNumber());
+            return;
+        }
+        if (node.getClass() != OperationNode.class || !producesNumber(node)
+                || isIncrement(((OperationNode) node).getOperation())) {
+            compileValue(node);
+            code.invoke(BytecodeWriter.INVOKEVIRTUAL, VALUE, "getNumber", "()D");
+            return;
+        }
+
+        OperationNode oNode = (OperationNode) node;
+        OperationNode.Operations op = oNode.getOperation();
+        compileNumber(oNode.getLeft());
+        if (op == OperationNode.Operations.UNARYNEG) {
+            code.op(BytecodeWriter.DNEG, 0);
+            return;
+        } else if (op == OperationNode.Operations.UNARYPOS) {
+            return;
+        }
+        compileNumber(oNode.getRight().get());
+        switch (op) {
+        case ADD:
+            code.op(BytecodeWriter.DADD, -2);
+            break;
+        case SUBTRACT:
+            code.op(BytecodeWriter.DSUB, -2);
+            break;
+        case MULTIPLY:
+            code.op(BytecodeWriter.DMUL, -2);
+            break;
+        case DIVIDE:
+            code.invoke(BytecodeWriter.INVOKESTATIC, COMPILED, "divisor", "(D)D");
+            code.op(BytecodeWriter.DDIV, -2);
+            break;
+        case MODULO:
+            code.invoke(BytecodeWriter.INVOKESTATIC, COMPILED, "divisor", "(D)D");
+            code.op(BytecodeWriter.DREM, -2);
+            break;
+        default:
+            code.invoke(BytecodeWriter.INVOKESTATIC, "java/lang/Math", "pow", "(DD)D");
+            break;
+        }
+    }
+
+    // Leaves the string value of an expression on the stack
+    private void compileString(Node node) throws Exception {
+        if (node.getClass() == ConstantNode.class && !((ConstantNode) node).isNumber()) {
+            code.pushString(((ConstantNode) node).getValue());
+        } else if (node.getClass() == OperationNode.class
+                && ((OperationNode) node).getOperation() == OperationNode.Operations.CONCATENATION) {
+            OperationNode oNode = (OperationNode) node;
+            compileString(oNode.getLeft());
+            compileString(oNode.getRight().get());
+            code.invoke(BytecodeWriter.INVOKEVIRTUAL, "java/lang/String", "concat",
+                    "(Ljava/lang/String;)Ljava/lang/String;");
+        } else {
+            compileValue(node);
+            loadConversion();
+            code.invoke(BytecodeWriter.INVOKEVIRTUAL, VALUE, "get", "(" + CONVERTER_TYPE + ")Ljava/lang/String;");
+        }
+    }
+
+    // Leaves the truth of an expression on the stack, as an int that is 0 or 1
+    private void compileCondition(Node node) throws Exception {
+        if (!isCondition(node)) {
+            compileValue(node);
+            code.invoke(BytecodeWriter.INVOKESTATIC, EXEC, "isTrue", "(" + VALUE_TYPE + ")Z");
+            return;
+        }
+
+        OperationNode oNode = (OperationNode) node;
+        OperationNode.Operations op = oNode.getOperation();
+        BytecodeWriter.Label isFalse = new BytecodeWriter.Label();
+        BytecodeWriter.Label isTrue = new BytecodeWriter.Label();
+        BytecodeWriter.Label end = new BytecodeWriter.Label();
+
+        if (op == OperationNode.Operations.NOT) {
+            compileCondition(oNode.getLeft());
+            code.jump(BytecodeWriter.IFNE, isFalse);
+            code.jump(BytecodeWriter.GOTO, isTrue);
+        } else if (op == OperationNode.Operations.AND) {
+            compileCondition(oNode.getLeft());
+            code.jump(BytecodeWriter.IFEQ, isFalse);
+            compileCondition(oNode.getRight().get());
+            code.jump(BytecodeWriter.IFEQ, isFalse);
+            code.jump(BytecodeWriter.GOTO, isTrue);
+        } else if (op == OperationNode.Operations.OR) {
+            compileCondition(oNode.getLeft());
+            code.jump(BytecodeWriter.IFNE, isTrue);
+            compileCondition(oNode.getRight().get());
+            code.jump(BytecodeWriter.IFNE, isTrue);
+            code.jump(BytecodeWriter.GOTO, isFalse);
+        } else {
+            // A comparison, of doubles if both sides can only be numbers, and through
+            // ExecNode.compare() otherwise
+            Node left = oNode.getLeft();
+            Node right = oNode.getRight().get();
+            if (producesNumber(left) && producesNumber(right)) {
+                compileNumber(left);
+                compileNumber(right);
+                code.invoke(BytecodeWriter.INVOKESTATIC, EXEC, "compareNumbers", "(DD)I");
+            } else {
+                compileValue(left);
+                compileValue(right);
+                loadConversion();
+                code.invoke(BytecodeWriter.INVOKESTATIC, EXEC, "compare",
+                        "(" + VALUE_TYPE + VALUE_TYPE + CONVERTER_TYPE + ")I");
+            }
+            code.jump(comparisonJump(op), isTrue);
+            code.jump(BytecodeWriter.GOTO, isFalse);
+        }
+
+        code.mark(isTrue);
+        code.pushInt(1);
+        code.jump(BytecodeWriter.GOTO, end);
+        code.mark(isFalse);
+        code.pushInt(0);
+        code.mark(end);
+    }
+
+    // ----------HELPERS----------
+
+    private static int comparisonJump(OperationNode.Operations op) {
+        switch (op) {
+        case EQ:
+            return BytecodeWriter.IFEQ;
+        case NE:
+            return BytecodeWriter.IFNE;
+        case LT:
+            return BytecodeWriter.IFLT;
+        case LE:
+            return BytecodeWriter.IFLE;
+        case GT:
+            return BytecodeWriter.IFGT;
+        default:
+            return BytecodeWriter.IFGE;
+        }
+    }
+
+    // Returns true for the operations compileCondition() compiles itself
+    private static boolean isCondition(Node node) {
+        if (node.getClass() != OperationNode.class) {
+            return false;
+        }
+        switch (((OperationNode) node).getOperation()) {
+        case EQ:
+        case NE:
+        case LT:
+        case LE:
+        case GT:
+        case GE:
+        case AND:
+        case OR:
+        case NOT:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static boolean isIncrement(OperationNode.Operations op) {
+        return op == OperationNode.Operations.PREINC || op == OperationNode.Operations.POSTINC
+                || op == OperationNode.Operations.PREDEC || op == OperationNode.Operations.POSTDEC;
+    }
+
+    // Returns true if an expression can only ever produce a number
+    private static boolean producesNumber(Node node) {
+        if (node.getClass() == ConstantNode.class) {
+            return ((ConstantNode) node).isNumber();
+        }
+        if (node.getClass() != OperationNode.class) {
+            return false;
+        }
+        switch (((OperationNode) node).getOperation()) {
+        case ADD:
+        case SUBTRACT:
+        case MULTIPLY:
+        case DIVIDE:
+        case MODULO:
+        case EXPONENT:
+        case UNARYNEG:
+        case UNARYPOS:
+        case PREINC:
+        case POSTINC:
+        case PREDEC:
+        case POSTDEC:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    // Returns the value of a constant, made the same way ExecNodeBuilder makes it
+    private static InterpreterDataType constant(ConstantNode node) {
+        if (node.isNumber()) {
+            return new InterpreterDataType(node.getNumericValue());
+        }
+        return new InterpreterDataType(node.getValue());
+    }
+
+    private void loadConstant(InterpreterDataType value) {
+        code.local(BytecodeWriter.ALOAD, 0);
+        code.field(BytecodeWriter.GETFIELD, COMPILED, "constants", "[" + VALUE_TYPE);
+        code.pushInt(constants.size());
+        code.op(BytecodeWriter.AALOAD, -1);
+        constants.add(value);
+    }
+
+    private void loadFallback(ExecNode node) {
+        code.local(BytecodeWriter.ALOAD, 0);
+        code.field(BytecodeWriter.GETFIELD, COMPILED, "fallbacks", "[LExecNode;");
+        code.pushInt(fallbacks.size());
+        code.op(BytecodeWriter.AALOAD, -1);
+        fallbacks.add(node);
+    }
+
+    private void loadHandler() {
+        code.local(BytecodeWriter.ALOAD, INTERPRETER_LOCAL);
+        code.field(BytecodeWriter.GETFIELD, INTERPRETER, "handler", "L" + HANDLER + ";");
+    }
+
+    // Pushes what converts numbers to strings under the current CONVFMT
+    private void loadConversion() {
+        code.local(BytecodeWriter.ALOAD, INTERPRETER_LOCAL);
+        code.field(BytecodeWriter.GETFIELD, INTERPRETER, "conversion", CONVERTER_TYPE);
+    }
+
+    // Pushes the array holding a variable's slot, and the index of the slot in it
+    private void loadSlot(VariableReferenceNode variable) {
+        code.local(BytecodeWriter.ALOAD, INTERPRETER_LOCAL);
+        if (variable.isLocal()) {
+            code.field(BytecodeWriter.GETFIELD, INTERPRETER, "stack", "[" + VALUE_TYPE);
+            code.local(BytecodeWriter.ALOAD, INTERPRETER_LOCAL);
+            code.field(BytecodeWriter.GETFIELD, INTERPRETER, "framePointer", "I");
+            code.pushInt(variable.getSlot());
+            code.op(BytecodeWriter.IADD, -1);
+        } else {
+            code.field(BytecodeWriter.GETFIELD, INTERPRETER, "globals", "[" + VALUE_TYPE);
+            code.pushInt(variable.getSlot());
+        }
+    }
+
+    // Pushes the value of a plain variable, or the uninitialized value if it has
+    // never been assigned
+    private void loadVariable(VariableReferenceNode variable) {
+        BytecodeWriter.Label assigned = new BytecodeWriter.Label();
+        loadSlot(variable);
+        code.op(BytecodeWriter.AALOAD, -1);
+        code.op(BytecodeWriter.DUP, 1);
+        code.jump(BytecodeWriter.IFNONNULL, assigned);
+        code.op(BytecodeWriter.POP, -1);
+        code.field(BytecodeWriter.GETSTATIC, INTERPRETER, "UNINITIALIZED", VALUE_TYPE);
+        code.mark(assigned);
+    }
+
+    // Stores the value in a local variable of the compiled code into a plain
+    // variable; the globals the interpreter acts on go through assignGlobal()
+    private void storeVariable(VariableReferenceNode variable, int value) {
+        if (!variable.isLocal() && ExecNodeBuilder.isSpecial(variable.getSlot())) {
+            code.local(BytecodeWriter.ALOAD, INTERPRETER_LOCAL);
+            code.pushInt(variable.getSlot());
+            code.local(BytecodeWriter.ALOAD, value);
+            code.invoke(BytecodeWriter.INVOKEVIRTUAL, INTERPRETER, "assignGlobal", "(I" + VALUE_TYPE + ")V");
+            return;
+        }
+        loadSlot(variable);
+        code.local(BytecodeWriter.ALOAD, value);
+        code.op(BytecodeWriter.AASTORE, -3);
+    }
+
+}
@@ -0,0 +1,488 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+//Writes a JVM class file, just enough of one for the classes BytecodeCompiler
+//makes: a constant pool, fields and methods, and method code with forward and
+//backward jumps. Classes are written as version 50 without stack maps, which
+//the JVM verifies by inference. The stack depth is tracked as instructions are
+//added, so the writer can work out the maximum stack of each method itself.
+public class BytecodeWriter {
+
+    // Access flags
+    public static final int PUBLIC = 0x0001;
+    public static final int PRIVATE = 0x0002;
+    public static final int FINAL = 0x0010;
+    public static final int SUPER = 0x0020;
+
+    // The opcodes used by the compiler
+    public static final int ACONST_NULL = 0x01;
+    public static final int ICONST_0 = 0x03;
+    public static final int DCONST_0 = 0x0e;
+    public static final int DCONST_1 = 0x0f;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC = 0x12;
+    public static final int LDC_W = 0x13;
+    public static final int LDC2_W = 0x14;
+    public static final int ILOAD = 0x15;
+    public static final int DLOAD = 0x18;
+    public static final int ALOAD = 0x19;
+    public static final int ISTORE = 0x36;
+    public static final int DSTORE = 0x39;
+    public static final int ASTORE = 0x3a;
+    public static final int AALOAD = 0x32;
+    public static final int AASTORE = 0x53;
+    public static final int POP = 0x57;
+    public static final int POP2 = 0x58;
+    public static final int DUP = 0x59;
+    public static final int DUP_X1 = 0x5a;
+    public static final int DUP_X2 = 0x5b;
+    public static final int DUP2 = 0x5c;
+    public static final int SWAP = 0x5f;
+    public static final int IADD = 0x60;
+    public static final int DADD = 0x63;
+    public static final int DSUB = 0x67;
+    public static final int DMUL = 0x6b;
+    public static final int DDIV = 0x6f;
+    public static final int DREM = 0x73;
+    public static final int DNEG = 0x77;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int IFLT = 0x9b;
+    public static final int IFGE = 0x9c;
+    public static final int IFGT = 0x9d;
+    public static final int IFLE = 0x9e;
+    public static final int IF_ACMPEQ = 0xa5;
+    public static final int IF_ACMPNE = 0xa6;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac;
+    public static final int ARETURN = 0xb0;
+    public static final int RETURN = 0xb1;
+    public static final int GETSTATIC = 0xb2;
+    public static final int GETFIELD = 0xb4;
+    public static final int PUTFIELD = 0xb5;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int NEW = 0xbb;
+    public static final int ATHROW = 0xbf;
+    public static final int IFNULL = 0xc6;
+    public static final int IFNONNULL = 0xc7;
+
+    private String name;
+    private String superName;
+
+    // The constant pool, written as entries are added; entries are shared by
+    // key, so asking for the same constant twice returns the same index
+    private ByteArrayOutputStream pool;
+    private DataOutputStream poolOut;
+    private HashMap<String, Integer> entries;
+    private int poolCount;
+
+    private ArrayList<byte[]> fields;
+    private ArrayList<byte[]> methods;
+
+    public BytecodeWriter(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+        pool = new ByteArrayOutputStream();
+        poolOut = new DataOutputStream(pool);
+        entries = new HashMap<>();
+        poolCount = 1;
+        fields = new ArrayList<>();
+        methods = new ArrayList<>();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // ----------CONSTANT-POOL----------
+
+    public int utf8(String value) {
+        Integer index = entries.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            poolOut.writeByte(1);
+            poolOut.writeUTF(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        entries.put("U" + value, poolCount);
+        return poolCount++;
+    }
+
+    public int classRef(String internalName) {
+        return reference("C" + internalName, 7, utf8(internalName), -1);
+    }
+
+    public int string(String value) {
+        return reference("S" + value, 8, utf8(value), -1);
+    }
+
+    public int integer(int value) {
+        Integer index = entries.get("I" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            poolOut.writeByte(3);
+            poolOut.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        entries.put("I" + value, poolCount);
+        return poolCount++;
+    }
+
+    // A double takes up two entries of the pool
+    public int doubleConstant(double value) {
+        String key = "D" + Double.doubleToRawLongBits(value);
+        Integer index = entries.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            poolOut.writeByte(6);
+            poolOut.writeDouble(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        entries.put(key, poolCount);
+        int result = poolCount;
+        poolCount += 2;
+        return result;
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return reference("F" + owner + "." + name + ":" + descriptor, 9, classRef(owner),
+                nameAndType(name, descriptor));
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return reference("M" + owner + "." + name + ":" + descriptor, 10, classRef(owner),
+                nameAndType(name, descriptor));
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        return reference("N" + name + ":" + descriptor, 12, utf8(name), utf8(descriptor));
+    }
+
+    // Adds an entry made of one or two indexes of other entries
+    private int reference(String key, int tag, int first, int second) {
+        Integer index = entries.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            poolOut.writeByte(tag);
+            poolOut.writeShort(first);
+            if (second >= 0) {
+                poolOut.writeShort(second);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        entries.put(key, poolCount);
+        return poolCount++;
+    }
+
+    // ----------MEMBERS----------
+
+    public void addField(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    // Starts a method; its code is added through the returned Code, and the method
+    // becomes part of the class once Code.end() is called
+    public Code addMethod(int access, String name, String descriptor, int arguments) {
+        return new Code(access, name, descriptor, arguments);
+    }
+
+    // Returns the finished class file
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int thisIndex = classRef(name);
+        int superIndex = classRef(superName);
+        if (poolCount > 65535) {
+            throw new IllegalStateException("Too many constants");
+        }
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(50);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(PUBLIC | FINAL | SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // A position in a method's code that jumps can go to. The stack depth at a
+    // label is taken from the first jump to it, so code after an unconditional
+    // jump starts from the right depth.
+    public static class Label {
+
+        private int position = -1;
+        private int depth = -1;
+        private ArrayList<int[]> fixups = new ArrayList<>();
+    }
+
+    // The code of a method being written
+    public class Code {
+
+        private int access;
+        private String name;
+        private String descriptor;
+        private ByteArrayOutputStream code;
+        private int locals;
+        private int depth;
+        private int maxDepth;
+        private ArrayList<Label> labels;
+
+        private Code(int access, String name, String descriptor, int arguments) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            code = new ByteArrayOutputStream();
+            locals = arguments;
+            labels = new ArrayList<>();
+        }
+
+        // Returns a new local variable slot; doubles take two
+        public int newLocal(boolean wide) {
+            int local = locals;
+            locals += wide ? 2 : 1;
+            return local;
+        }
+
+        // Adds an instruction without operands that changes the stack depth by delta
+        public void op(int opcode, int delta) {
+            code.write(opcode);
+            stack(delta);
+        }
+
+        public void local(int opcode, int local) {
+            if (local > 255) {
+                throw new IllegalStateException("Too many locals");
+            }
+            code.write(opcode);
+            code.write(local);
+            boolean load = opcode == ILOAD || opcode == ALOAD || opcode == DLOAD;
+            int size = opcode == DLOAD || opcode == DSTORE ? 2 : 1;
+            stack(load ? size : -size);
+        }
+
+        public void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.write(BIPUSH);
+                code.write(value);
+                stack(1);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                code.write(SIPUSH);
+                writeShort(value);
+                stack(1);
+            } else {
+                constant(integer(value), 1);
+            }
+        }
+
+        public void pushDouble(double value) {
+            if (Double.doubleToRawLongBits(value) == 0) {
+                op(DCONST_0, 2);
+            } else if (value == 1) {
+                op(DCONST_1, 2);
+            } else {
+                code.write(LDC2_W);
+                writeShort(doubleConstant(value));
+                stack(2);
+            }
+        }
+
+        public void pushString(String value) {
+            constant(string(value), 1);
+        }
+
+        private void constant(int index, int size) {
+            if (index < 256) {
+                code.write(LDC);
+                code.write(index);
+            } else {
+                code.write(LDC_W);
+                writeShort(index);
+            }
+            stack(size);
+        }
+
+        public void type(int opcode, String internalName) {
+            code.write(opcode);
+            writeShort(classRef(internalName));
+            stack(opcode == NEW ? 1 : 0);
+        }
+
+        public void field(int opcode, String owner, String name, String descriptor) {
+            code.write(opcode);
+            writeShort(fieldRef(owner, name, descriptor));
+            int size = descriptor.equals("D") || descriptor.equals("J") ? 2 : 1;
+            if (opcode == GETFIELD) {
+                stack(size - 1);
+            } else if (opcode == GETSTATIC) {
+                stack(size);
+            } else if (opcode == PUTFIELD) {
+                stack(-size - 1);
+            } else {
+                stack(-size);
+            }
+        }
+
+        public void invoke(int opcode, String owner, String name, String descriptor) {
+            code.write(opcode);
+            writeShort(methodRef(owner, name, descriptor));
+            int delta = returnSize(descriptor) - argumentSize(descriptor);
+            stack(opcode == INVOKESTATIC ? delta : delta - 1);
+        }
+
+        public void jump(int opcode, Label label) {
+            int start = code.size();
+            code.write(opcode);
+            if (opcode == IF_ACMPEQ || opcode == IF_ACMPNE) {
+                stack(-2);
+            } else if (opcode != GOTO) {
+                stack(-1);
+            }
+            if (label.depth < 0) {
+                label.depth = depth;
+            }
+            if (label.position >= 0) {
+                writeShort(offset(label.position - start));
+            } else {
+                label.fixups.add(new int[] { start, code.size() });
+                writeShort(0);
+                if (!labels.contains(label)) {
+                    labels.add(label);
+                }
+            }
+        }
+
+        public void mark(Label label) {
+            label.position = code.size();
+            if (label.depth >= 0) {
+                depth = label.depth;
+            } else {
+                label.depth = depth;
+            }
+        }
+
+        // Finishes the method. Anything that doesn't fit the limits of a class file
+        // throws an IllegalStateException, in which case the class can't be used.
+        public void end() throws IOException {
+            byte[] bytes = code.toByteArray();
+            for (Label label : labels) {
+                if (label.position < 0) {
+                    throw new IllegalStateException("Label never placed");
+                }
+                for (int[] fixup : label.fixups) {
+                    int offset = offset(label.position - fixup[0]);
+                    bytes[fixup[1]] = (byte) (offset >> 8);
+                    bytes[fixup[1] + 1] = (byte) offset;
+                }
+            }
+            if (bytes.length >= 65535) {
+                throw new IllegalStateException("Method too large to compile: " + name);
+            }
+            ByteArrayOutputStream method = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(method);
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + bytes.length);
+            out.writeShort(maxDepth);
+            out.writeShort(locals);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(0);
+            out.writeShort(0);
+            methods.add(method.toByteArray());
+        }
+
+        private int offset(int offset) {
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("Jump too far");
+            }
+            return offset;
+        }
+
+        private void stack(int delta) {
+            depth += delta;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void writeShort(int value) {
+            code.write(value >> 8);
+            code.write(value);
+        }
+    }
+
+    // Returns the number of stack slots taken by the arguments of a method
+    private static int argumentSize(String descriptor) {
+        int size = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'D' || c == 'J') {
+                size += 2;
+                i++;
+            } else {
+                size++;
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+            }
+        }
+        return size;
+    }
+
+    private static int returnSize(String descriptor) {
+        char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+        if (c == 'V') {
+            return 0;
+        }
+        return c == 'D' || c == 'J' ? 2 : 1;
+    }
+
+}
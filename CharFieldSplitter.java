@@ -0,0 +1,30 @@
+//Splits records on every occurrence of a single literal character, such as a
+//comma, tab, or pipe. Empty fields between adjacent separators are kept.
+public class CharFieldSplitter implements FieldSplitter {
+
+    private char separator;
+
+    public CharFieldSplitter(char separator) {
+        this.separator = separator;
+    }
+
+    public int split(CharSequence text, FieldOffsets offsets, int limit) {
+        int length = text.length();
+        if (length == 0) {
+            return 0;
+        }
+        int count = 0;
+        int start = 0;
+        for (int i = 0; i < length && count < limit; i++) {
+            if (text.charAt(i) == separator) {
+                count = offsets.add(count, start, i);
+                start = i + 1;
+            }
+        }
+        if (count < limit) {
+            count = offsets.add(count, start, length);
+        }
+        return count;
+    }
+
+}
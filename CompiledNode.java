@@ -0,0 +1,55 @@
+//The base class of the classes that BytecodeCompiler makes, one for each block or
+//function of the program. A compiled class only overrides run(); it reaches the
+//interpreter's variables through the interpreter field, and anything it couldn't
+//compile is kept as an ExecNode in fallbacks and run from there. The static
+//methods are small helpers the compiled code calls rather than spelling out in
+//bytecode.
+public abstract class CompiledNode extends StatementExecNodes.Statement {
+
+    protected Interpreter interpreter;
+    protected ExecNode[] fallbacks;
+    protected InterpreterDataType[] constants;
+
+    public CompiledNode(Interpreter interpreter, ExecNode[] fallbacks, InterpreterDataType[] constants) {
+        this.interpreter = interpreter;
+        this.fallbacks = fallbacks;
+        this.constants = constants;
+    }
+
+    public static InterpreterDataType number(double value) {
+        return new InterpreterDataType(value);
+    }
+
+    public static InterpreterDataType string(String value) {
+        return new InterpreterDataType(value);
+    }
+
+    // Returns the number to divide by, refusing to divide by zero
+    public static double divisor(double divisor) throws Exception {
+        if (divisor == 0) {
+            throw new Exception("Division by zero");
+        }
+        return divisor;
+    }
+
+    public static ReturnType none() {
+        return ReturnType.NONE;
+    }
+
+    public static ReturnType jump(boolean isBreak) {
+        return isBreak ? ReturnType.BREAK : ReturnType.CONTINUE;
+    }
+
+    // Leaves the value in the function's frame; value is null for a return with
+    // no value
+    public static ReturnType returnValue(Interpreter interpreter, InterpreterDataType value) {
+        interpreter.setReturnValue(value);
+        return ReturnType.RETURN;
+    }
+
+    // Returns true if a statement run through a fallback lets control carry on
+    public static boolean isNone(ReturnType type) {
+        return type == ReturnType.NONE;
+    }
+
+}
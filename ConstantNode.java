@@ -3,15 +3,44 @@
 public class ConstantNode extends Node {
 
     private String value;
+    private boolean number;
+    private double numericValue;
 
     public ConstantNode(String value) {
         this.value = value;
     }
 
+    // Constructor for constants that may be number literals; the lexer only
+    // produces valid numbers, so the value can be parsed up front
+    public ConstantNode(String value, boolean number) {
+        this.value = value;
+        this.number = number;
+        if (number) {
+            numericValue = Double.parseDouble(value);
+        }
+    }
+
+    // Constructor for numbers worked out before the program runs, such as the
+    // result of folding an expression on constants
+    public ConstantNode(double numericValue) {
+        long integer = (long) numericValue;
+        value = integer == numericValue ? Long.toString(integer) : Double.toString(numericValue);
+        number = true;
+        this.numericValue = numericValue;
+    }
+
     public String getValue() {
         return value;
     }
 
+    public boolean isNumber() {
+        return number;
+    }
+
+    public double getNumericValue() {
+        return numericValue;
+    }
+
     public String toString() {
         return value;
     }
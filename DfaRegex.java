@@ -0,0 +1,821 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+//A regular expression matched by a DFA, so a match takes time linear in the
+//length of the text however the pattern is written, where java.util.regex can
+//take exponential time backtracking. The pattern is parsed into a tree of terms
+//and built into a Thompson NFA. The states of the DFA are sets of NFA states,
+//made lazily as texts call for them and kept for every later match, so a regex
+//used on every record soon stops making states at all.
+//
+//The syntax is that of java.util.regex, which the interpreter has always used,
+//limited to what a DFA can do: literals and escapes, ., character classes, \d
+//\s \w and their negations, grouping, |, the quantifiers * + ? and {n,m}, and
+//the anchors ^ and $. Anything else throws UnsupportedException, for
+//Regex.compile() to fall back on java.util.regex. Matches are leftmost-longest,
+//as AWK defines them, where java.util.regex takes the first alternative that
+//matches.
+public class DfaRegex extends Regex {
+
+    // Thrown for a pattern the DFA can't handle; it only tells compile() to fall
+    // back, so it has no stack trace
+    static class UnsupportedException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    // The most times a term may be repeated with {n,m}, and the most NFA states a
+    // pattern may take; larger patterns are left to java.util.regex
+    private static final int MAX_REPEAT = 100;
+    private static final int MAX_NFA_STATES = 10000;
+
+    // The most DFA states kept for one automaton; past it they are all dropped
+    // and made again as needed, so memory stays bounded for any pattern
+    private static final int MAX_DFA_STATES = 4096;
+
+    // Characters as sorted lists of inclusive [low, high] ranges
+    private static final int MAX_CHAR = 0xFFFF;
+    private static final int[] DIGIT = { '0', '9' };
+    private static final int[] SPACE = { '\t', '\r', ' ', ' ' };
+    private static final int[] WORD = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+    // Anything but a line terminator, as . is in java.util.regex
+    private static final int[] DOT = { 0, '\n' - 1, '\n' + 1, '\r' - 1, '\r' + 1, 0x84, 0x86, 0x2027, 0x202A,
+            MAX_CHAR };
+
+    private String pattern;
+    private int position;
+
+    // The forward NFA, and the reversed one that finds where matches start
+    private Nfa nfa;
+    private Nfa reversedNfa;
+
+    // Finds out whether there is a match anywhere, finds the longest match from a
+    // given start, and finds where matches start, scanning backwards
+    private Dfa searcher;
+    private Dfa matcher;
+    private Dfa starter;
+
+    // Where matches start in the text last searched, and the end of the match
+    // search() last found
+    private CharSequence startsText;
+    private boolean[] starts;
+    private int matchEnd;
+
+    // The longest run of plain characters every match must contain
+    private String requiredLiteral;
+
+    public DfaRegex(String source) throws UnsupportedException {
+        super(source);
+        pattern = source;
+        position = 0;
+        Term term = parseAlternation();
+        if (position < pattern.length()) {
+            throw new UnsupportedException("Unmatched )");
+        }
+        requiredLiteral = requiredLiteral(term);
+        nfa = new Nfa(term, false);
+        reversedNfa = new Nfa(term, true);
+        searcher = new Dfa(nfa, true);
+        matcher = new Dfa(nfa, false);
+        starts = new boolean[0];
+    }
+
+    public boolean find(CharSequence text) {
+        Dfa dfa = searcher;
+        int length = text.length();
+        if (length == 0) {
+            return nfa.matchesEmptyText();
+        }
+        State state = dfa.start(true);
+        for (int i = 0;; i++) {
+            if (state.accepting || i == length && state.acceptingAtEnd) {
+                return true;
+            }
+            if (i == length || state.dead) {
+                return false;
+            }
+            state = dfa.step(state, text.charAt(i));
+        }
+    }
+
+    // Finds the leftmost match at or after from: the starts of all matches are
+    // found in one backwards pass over the text, kept while the same string is
+    // searched again, and the longest match is then taken from the first start
+    public int search(CharSequence text, int from) {
+        if (text != startsText || !(text instanceof String)) {
+            findStarts(text);
+        }
+        for (int i = from; i <= text.length(); i++) {
+            if (starts[i]) {
+                matchEnd = longest(text, i);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int end() {
+        return matchEnd;
+    }
+
+    public String getRequiredLiteral() {
+        return requiredLiteral.isEmpty() ? null : requiredLiteral;
+    }
+
+    // Marks every position of the text that a match starts at, by running the
+    // reversed pattern backwards from the end
+    private void findStarts(CharSequence text) {
+        if (starter == null) {
+            starter = new Dfa(reversedNfa, true);
+        }
+        int length = text.length();
+        if (starts.length < length + 1) {
+            starts = new boolean[Math.max(length + 1, starts.length * 2)];
+        }
+        if (length == 0) {
+            starts[0] = reversedNfa.matchesEmptyText();
+            startsText = text;
+            return;
+        }
+        State state = starter.start(true);
+        for (int i = length;; i--) {
+            starts[i] = state.accepting || i == 0 && state.acceptingAtEnd;
+            if (i == 0) {
+                break;
+            }
+            state = starter.step(state, text.charAt(i - 1));
+        }
+        startsText = text;
+    }
+
+    // Returns the end of the longest match starting at start, or -1 if there is
+    // none
+    private int longest(CharSequence text, int start) {
+        int length = text.length();
+        if (length == 0) {
+            return nfa.matchesEmptyText() ? 0 : -1;
+        }
+        int end = -1;
+        State state = matcher.start(start == 0);
+        for (int i = start;; i++) {
+            if (state.accepting || i == length && state.acceptingAtEnd) {
+                end = i;
+            }
+            if (i == length) {
+                return end;
+            }
+            state = matcher.step(state, text.charAt(i));
+            if (state.dead) {
+                return end;
+            }
+        }
+    }
+
+    // ----------PARSING----------
+
+    // The kinds of term
+    private static final int EMPTY = 0;
+    private static final int CHARS = 1;
+    private static final int CONCAT = 2;
+    private static final int ALTERNATE = 3;
+    private static final int REPEAT = 4;
+    private static final int BEGIN = 5;
+    private static final int END = 6;
+
+    // A piece of the parsed pattern. CHARS matches one character in ranges, CONCAT
+    // and ALTERNATE combine left and right, and REPEAT matches left min to max
+    // times, max being -1 for no limit.
+    private static class Term {
+
+        private int kind;
+        private Term left;
+        private Term right;
+        private int[] ranges;
+        private int min;
+        private int max;
+
+        private Term(int kind) {
+            this.kind = kind;
+        }
+    }
+
+    // Returns the longest string every match of a term must contain: the longest
+    // run of single characters in the sequence of terms it concatenates, or in a
+    // term that has to be repeated at least once
+    private static String requiredLiteral(Term term) {
+        ArrayList<Term> sequence = new ArrayList<>();
+        flatten(term, sequence);
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        for (Term item : sequence) {
+            if (item.kind == CHARS && item.ranges.length == 2 && item.ranges[0] == item.ranges[1]) {
+                run.append((char) item.ranges[0]);
+                continue;
+            }
+            if (run.length() > best.length()) {
+                best = run.toString();
+            }
+            run.setLength(0);
+            if (item.kind == REPEAT && item.min > 0) {
+                String repeated = requiredLiteral(item.left);
+                if (repeated.length() > best.length()) {
+                    best = repeated;
+                }
+            }
+        }
+        return run.length() > best.length() ? run.toString() : best;
+    }
+
+    private static void flatten(Term term, ArrayList<Term> sequence) {
+        if (term.kind == CONCAT) {
+            flatten(term.left, sequence);
+            flatten(term.right, sequence);
+        } else {
+            sequence.add(term);
+        }
+    }
+
+    private static Term chars(int[] ranges) {
+        Term term = new Term(CHARS);
+        term.ranges = ranges;
+        return term;
+    }
+
+    private static Term binary(int kind, Term left, Term right) {
+        Term term = new Term(kind);
+        term.left = left;
+        term.right = right;
+        return term;
+    }
+
+    private Term parseAlternation() throws UnsupportedException {
+        Term term = parseConcatenation();
+        while (position < pattern.length() && pattern.charAt(position) == '|') {
+            position++;
+            term = binary(ALTERNATE, term, parseConcatenation());
+        }
+        return term;
+    }
+
+    private Term parseConcatenation() throws UnsupportedException {
+        Term term = new Term(EMPTY);
+        while (position < pattern.length() && pattern.charAt(position) != '|' && pattern.charAt(position) != ')') {
+            Term next = parseRepetition();
+            term = term.kind == EMPTY ? next : binary(CONCAT, term, next);
+        }
+        return term;
+    }
+
+    // Parses an atom and the quantifier after it, if there is one. A second
+    // quantifier, which java.util.regex reads as lazy or possessive, isn't handled.
+    private Term parseRepetition() throws UnsupportedException {
+        Term term = parseAtom();
+        if (position >= pattern.length()) {
+            return term;
+        }
+        int min;
+        int max;
+        char c = pattern.charAt(position);
+        if (c == '*') {
+            min = 0;
+            max = -1;
+        } else if (c == '+') {
+            min = 1;
+            max = -1;
+        } else if (c == '?') {
+            min = 0;
+            max = 1;
+        } else if (c == '{') {
+            position++;
+            min = parseCount();
+            max = min;
+            if (position < pattern.length() && pattern.charAt(position) == ',') {
+                position++;
+                max = position < pattern.length() && pattern.charAt(position) == '}' ? -1 : parseCount();
+            }
+            if (position >= pattern.length() || pattern.charAt(position) != '}' || max >= 0 && max < min) {
+                throw new UnsupportedException("Invalid repetition");
+            }
+        } else {
+            return term;
+        }
+        position++;
+        if (term.kind == BEGIN || term.kind == END) {
+            throw new UnsupportedException("Repeated anchor");
+        }
+        if (position < pattern.length() && "*+?{".indexOf(pattern.charAt(position)) >= 0) {
+            throw new UnsupportedException("Lazy or possessive quantifier");
+        }
+        Term repeat = new Term(REPEAT);
+        repeat.left = term;
+        repeat.min = min;
+        repeat.max = max;
+        return repeat;
+    }
+
+    private int parseCount() throws UnsupportedException {
+        int start = position;
+        int count = 0;
+        while (position < pattern.length() && Character.isDigit(pattern.charAt(position))
+                && position - start < 4) {
+            count = count * 10 + pattern.charAt(position) - '0';
+            position++;
+        }
+        if (position == start || count > MAX_REPEAT) {
+            throw new UnsupportedException("Invalid repetition count");
+        }
+        return count;
+    }
+
+    private Term parseAtom() throws UnsupportedException {
+        char c = pattern.charAt(position++);
+        switch (c) {
+        case '(':
+            if (position < pattern.length() && pattern.charAt(position) == '?') {
+                throw new UnsupportedException("Special group");
+            }
+            Term term = parseAlternation();
+            if (position >= pattern.length() || pattern.charAt(position) != ')') {
+                throw new UnsupportedException("Unclosed group");
+            }
+            position++;
+            return term;
+        case '[':
+            return chars(parseClass());
+        case '.':
+            return chars(DOT);
+        case '^':
+            return new Term(BEGIN);
+        case '$':
+            return new Term(END);
+        case '\\':
+            return chars(parseEscape());
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+            throw new UnsupportedException("Dangling quantifier");
+        default:
+            return chars(single(c));
+        }
+    }
+
+    // Parses the escape after a backslash, returning the characters it matches.
+    // A backslash before anything but a letter or digit stands for that character.
+    private int[] parseEscape() throws UnsupportedException {
+        if (position >= pattern.length()) {
+            throw new UnsupportedException("Trailing backslash");
+        }
+        char c = pattern.charAt(position++);
+        switch (c) {
+        case 't':
+            return single('\t');
+        case 'n':
+            return single('\n');
+        case 'r':
+            return single('\r');
+        case 'f':
+            return single('\f');
+        case 'a':
+            return single(7);
+        case 'e':
+            return single(27);
+        case 'd':
+            return DIGIT;
+        case 'D':
+            return complement(DIGIT);
+        case 's':
+            return SPACE;
+        case 'S':
+            return complement(SPACE);
+        case 'w':
+            return WORD;
+        case 'W':
+            return complement(WORD);
+        default:
+            if (Character.isLetterOrDigit(c)) {
+                throw new UnsupportedException("Escape \\" + c);
+            }
+            return single(c);
+        }
+    }
+
+    // Parses a character class, after its [. Nested classes and intersections
+    // aren't handled, and neither is a ] straight after the [, which
+    // java.util.regex reads in its own way.
+    private int[] parseClass() throws UnsupportedException {
+        boolean negate = false;
+        if (position < pattern.length() && pattern.charAt(position) == '^') {
+            negate = true;
+            position++;
+        }
+        if (position < pattern.length() && pattern.charAt(position) == ']') {
+            throw new UnsupportedException("Leading ] in class");
+        }
+        int[] ranges = new int[8];
+        int count = 0;
+        while (true) {
+            if (position >= pattern.length()) {
+                throw new UnsupportedException("Unclosed class");
+            }
+            char c = pattern.charAt(position++);
+            if (c == ']') {
+                break;
+            }
+            int[] low = classCharacter(c);
+            if (low.length == 2 && low[0] == low[1] && position + 1 < pattern.length()
+                    && pattern.charAt(position) == '-' && pattern.charAt(position + 1) != ']') {
+                position++;
+                int[] high = classCharacter(pattern.charAt(position++));
+                if (high.length != 2 || high[0] != high[1] || high[0] < low[0]) {
+                    throw new UnsupportedException("Invalid range");
+                }
+                low = new int[] { low[0], high[0] };
+            }
+            if (count + low.length > ranges.length) {
+                ranges = Arrays.copyOf(ranges, (count + low.length) * 2);
+            }
+            System.arraycopy(low, 0, ranges, count, low.length);
+            count += low.length;
+        }
+        int[] set = normalize(Arrays.copyOf(ranges, count));
+        return negate ? complement(set) : set;
+    }
+
+    // Returns the characters one item of a class matches, given its first character
+    private int[] classCharacter(char c) throws UnsupportedException {
+        if (c == '[' || c == '&' && position < pattern.length() && pattern.charAt(position) == '&') {
+            throw new UnsupportedException("Nested class");
+        }
+        if (c == '\\') {
+            return parseEscape();
+        }
+        return single(c);
+    }
+
+    private int[] single(int c) throws UnsupportedException {
+        if (Character.isSurrogate((char) c)) {
+            throw new UnsupportedException("Supplementary character");
+        }
+        return new int[] { c, c };
+    }
+
+    // Sorts ranges and merges the ones that overlap or touch
+    private static int[] normalize(int[] ranges) {
+        int pairs = ranges.length / 2;
+        long[] sorted = new long[pairs];
+        for (int i = 0; i < pairs; i++) {
+            sorted[i] = (long) ranges[i * 2] << 32 | ranges[i * 2 + 1];
+        }
+        Arrays.sort(sorted);
+        int[] merged = new int[ranges.length];
+        int count = 0;
+        for (long range : sorted) {
+            int low = (int) (range >>> 32);
+            int high = (int) range;
+            if (count > 0 && low <= merged[count - 1] + 1) {
+                merged[count - 1] = Math.max(merged[count - 1], high);
+            } else {
+                merged[count++] = low;
+                merged[count++] = high;
+            }
+        }
+        return Arrays.copyOf(merged, count);
+    }
+
+    // Returns the characters not in the given sorted ranges
+    private static int[] complement(int[] ranges) {
+        int[] result = new int[ranges.length + 2];
+        int count = 0;
+        int next = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                result[count++] = next;
+                result[count++] = ranges[i] - 1;
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= MAX_CHAR) {
+            result[count++] = next;
+            result[count++] = MAX_CHAR;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static boolean contains(int[] ranges, char c) {
+        for (int i = 0; i < ranges.length && ranges[i] <= c; i += 2) {
+            if (c <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ----------NFA----------
+
+    // The kinds of NFA state: CHAR goes to out on a character in its ranges,
+    // SPLIT goes to both out and alt, BEGIN_STATE and END_STATE go to out at the
+    // start and end of the text, and MATCH ends a match
+    private static final int CHAR = 0;
+    private static final int SPLIT = 1;
+    private static final int BEGIN_STATE = 2;
+    private static final int END_STATE = 3;
+    private static final int MATCH = 4;
+
+    // A Thompson NFA, built from the end of the pattern backwards so every state
+    // is made knowing where it goes next. The reversed NFA matches the pattern
+    // read backwards, with the roles of ^ and $ swapped.
+    private static class Nfa {
+
+        private int[] kinds;
+        private int[][] ranges;
+        private int[] outs;
+        private int[] alts;
+        private int size;
+        private int start;
+
+        // The boundaries between the classes of characters that no state tells
+        // apart; the DFA has one transition per class rather than per character
+        private int[] bounds;
+
+        private Nfa(Term term, boolean reversed) throws UnsupportedException {
+            kinds = new int[16];
+            ranges = new int[16][];
+            outs = new int[16];
+            alts = new int[16];
+            start = build(term, add(MATCH, null, -1, -1), reversed);
+
+            TreeSet<Integer> points = new TreeSet<>();
+            for (int i = 0; i < size; i++) {
+                if (kinds[i] == CHAR) {
+                    for (int j = 0; j < ranges[i].length; j += 2) {
+                        points.add(ranges[i][j]);
+                        points.add(ranges[i][j + 1] + 1);
+                    }
+                }
+            }
+            bounds = new int[points.size()];
+            int i = 0;
+            for (int point : points) {
+                bounds[i++] = point;
+            }
+        }
+
+        private int add(int kind, int[] set, int out, int alt) throws UnsupportedException {
+            if (size == MAX_NFA_STATES) {
+                throw new UnsupportedException("Pattern too large");
+            }
+            if (size == kinds.length) {
+                kinds = Arrays.copyOf(kinds, size * 2);
+                ranges = Arrays.copyOf(ranges, size * 2);
+                outs = Arrays.copyOf(outs, size * 2);
+                alts = Arrays.copyOf(alts, size * 2);
+            }
+            kinds[size] = kind;
+            ranges[size] = set;
+            outs[size] = out;
+            alts[size] = alt;
+            return size++;
+        }
+
+        // Builds the states for a term that go on to next, returning the first
+        private int build(Term term, int next, boolean reversed) throws UnsupportedException {
+            switch (term.kind) {
+            case CHARS:
+                return add(CHAR, term.ranges, next, -1);
+            case CONCAT:
+                if (reversed) {
+                    return build(term.right, build(term.left, next, reversed), reversed);
+                }
+                return build(term.left, build(term.right, next, reversed), reversed);
+            case ALTERNATE:
+                return add(SPLIT, null, build(term.left, next, reversed), build(term.right, next, reversed));
+            case REPEAT: {
+                // The optional repeats nest, so each is only tried after the
+                // one before it, and the required ones come first
+                int tail = next;
+                if (term.max < 0) {
+                    // outs may grow while the body is built, so it is
+                    // only indexed afterwards
+                    tail = add(SPLIT, null, -1, next);
+                    int body = build(term.left, tail, reversed);
+                    outs[tail] = body;
+                } else {
+                    for (int i = term.min; i < term.max; i++) {
+                        tail = add(SPLIT, null, build(term.left, tail, reversed), next);
+                    }
+                }
+                for (int i = 0; i < term.min; i++) {
+                    tail = build(term.left, tail, reversed);
+                }
+                return tail;
+            }
+            case BEGIN:
+                return add(reversed ? END_STATE : BEGIN_STATE, null, next, -1);
+            case END:
+                return add(reversed ? BEGIN_STATE : END_STATE, null, next, -1);
+            default:
+                return next;
+            }
+        }
+
+        // Returns the states reachable from the seeds through SPLITs, and through
+        // BEGIN_STATEs and END_STATEs when at the start or end of the text. Only
+        // the states that wait on something are kept: CHARs, MATCHes, and
+        // END_STATEs not yet passed. The result is sorted, without repeats.
+        private int[] closure(int[] seeds, int seedCount, boolean atBeginning, boolean atEnd) {
+            boolean[] seen = new boolean[size];
+            int[] stack = new int[size];
+            int top = 0;
+            int[] result = new int[size];
+            int count = 0;
+            for (int i = 0; i < seedCount; i++) {
+                if (!seen[seeds[i]]) {
+                    seen[seeds[i]] = true;
+                    stack[top++] = seeds[i];
+                }
+            }
+            while (top > 0) {
+                int state = stack[--top];
+                int kind = kinds[state];
+                if (kind == CHAR || kind == MATCH || kind == END_STATE && !atEnd) {
+                    result[count++] = state;
+                    continue;
+                }
+                if (kind == BEGIN_STATE && !atBeginning) {
+                    continue;
+                }
+                if (!seen[outs[state]]) {
+                    seen[outs[state]] = true;
+                    stack[top++] = outs[state];
+                }
+                if (kind == SPLIT && !seen[alts[state]]) {
+                    seen[alts[state]] = true;
+                    stack[top++] = alts[state];
+                }
+            }
+            int[] sorted = Arrays.copyOf(result, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        // Returns true if the NFA matches an empty text, which is the one place
+        // where both ^ and $ hold, in either order
+        private boolean matchesEmptyText() {
+            for (int state : closure(new int[] { start }, 1, true, true)) {
+                if (kinds[state] == MATCH) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Returns true if the states reach a MATCH once the end of the text is
+        // passed
+        private boolean matchesAtEnd(int[] states) {
+            int[] seeds = new int[states.length];
+            int count = 0;
+            for (int state : states) {
+                if (kinds[state] == END_STATE) {
+                    seeds[count++] = outs[state];
+                }
+            }
+            if (count == 0) {
+                return false;
+            }
+            for (int state : closure(seeds, count, false, true)) {
+                if (kinds[state] == MATCH) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // ----------DFA----------
+
+    // A state of the DFA: the set of NFA states it stands for, whether it is a
+    // match, and the states it goes to, by class of character, once known
+    private static class State {
+
+        private int[] states;
+        private int hash;
+        private boolean accepting;
+        private boolean acceptingAtEnd;
+        private boolean dead;
+        private State[] next;
+
+        private State(int[] states) {
+            this.states = states;
+            hash = Arrays.hashCode(states);
+        }
+
+        public boolean equals(Object other) {
+            return other instanceof State && Arrays.equals(states, ((State) other).states);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // A DFA over an NFA, with its states made the first time they are reached. An
+    // unanchored DFA starts the NFA over at every character, so it finds matches
+    // starting anywhere; an anchored one only follows matches from where it began.
+    private static class Dfa {
+
+        private Nfa nfa;
+        private boolean unanchored;
+        private HashMap<State, State> states;
+        private State startAtBeginning;
+        private State startElsewhere;
+
+        // The class of each ASCII character; others are looked up in nfa.bounds
+        private int[] asciiClasses;
+
+        private Dfa(Nfa nfa, boolean unanchored) {
+            this.nfa = nfa;
+            this.unanchored = unanchored;
+            states = new HashMap<>();
+            asciiClasses = new int[128];
+            for (char c = 0; c < 128; c++) {
+                asciiClasses[c] = classOf(c);
+            }
+        }
+
+        // Returns the state to start in, at the start of the text or elsewhere
+        private State start(boolean atBeginning) {
+            if (atBeginning) {
+                if (startAtBeginning == null) {
+                    startAtBeginning = intern(nfa.closure(new int[] { nfa.start }, 1, true, false));
+                }
+                return startAtBeginning;
+            }
+            if (startElsewhere == null) {
+                startElsewhere = intern(nfa.closure(new int[] { nfa.start }, 1, false, false));
+            }
+            return startElsewhere;
+        }
+
+        // Returns the state reached from a state on a character
+        private State step(State state, char c) {
+            int characterClass = c < 128 ? asciiClasses[c] : classOf(c);
+            State next = state.next[characterClass];
+            if (next == null) {
+                next = makeNext(state, c);
+                state.next[characterClass] = next;
+            }
+            return next;
+        }
+
+        private State makeNext(State state, char c) {
+            int[] seeds = new int[state.states.length + 1];
+            int count = 0;
+            for (int s : state.states) {
+                if (nfa.kinds[s] == CHAR && contains(nfa.ranges[s], c)) {
+                    seeds[count++] = nfa.outs[s];
+                }
+            }
+            if (unanchored) {
+                seeds[count++] = nfa.start;
+            }
+            return intern(nfa.closure(seeds, count, false, false));
+        }
+
+        // Returns the DFA state for a set of NFA states, making it if it is new
+        private State intern(int[] set) {
+            State state = new State(set);
+            State existing = states.get(state);
+            if (existing != null) {
+                return existing;
+            }
+            if (states.size() == MAX_DFA_STATES) {
+                states.clear();
+                startAtBeginning = null;
+                startElsewhere = null;
+            }
+            state.next = new State[nfa.bounds.length + 1];
+            for (int s : set) {
+                if (nfa.kinds[s] == MATCH) {
+                    state.accepting = true;
+                }
+            }
+            state.acceptingAtEnd = state.accepting || nfa.matchesAtEnd(set);
+            state.dead = set.length == 0;
+            states.put(state, state);
+            return state;
+        }
+
+        private int classOf(char c) {
+            int index = Arrays.binarySearch(nfa.bounds, c);
+            return index >= 0 ? index + 1 : -(index + 1);
+        }
+    }
+
+}
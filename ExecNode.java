@@ -0,0 +1,96 @@
+//A node of the tree that the interpreter actually runs. ExecNodeBuilder turns the
+//parser's AST into these once, before the program starts, and every choice that
+//only depends on the shape of the program - which operator, whether a variable is
+//local or global, how many arguments a call has - is made then, by choosing the
+//subclass. Running a node is a single virtual call: execute() for an expression,
+//run() for a statement.
+public abstract class ExecNode {
+
+    // Evaluates the node as an expression and returns its value
+    public abstract InterpreterDataType execute() throws Exception;
+
+    // Evaluates the node for its numeric value. Nodes that work out a number
+    // anyway override this, so that arithmetic on arithmetic never has to put the
+    // intermediate results in value cells.
+    public double executeNumber() throws Exception {
+        return execute().getNumber();
+    }
+
+    // Evaluates the node for its string value, converting a number with the
+    // given CONVFMT; see executeNumber()
+    public String executeString(NumberConverter conversion) throws Exception {
+        return execute().get(conversion);
+    }
+
+    // Evaluates the node as a condition. Comparisons and boolean operators
+    // override this, so conditions never go through TRUE and FALSE.
+    public boolean executeCondition() throws Exception {
+        return isTrue(execute());
+    }
+
+    // Returns true if the node can only ever produce a number, whatever the values
+    // it is given; nodes that use its value can then rely on executeNumber()
+    public boolean producesNumber() {
+        return false;
+    }
+
+    // Runs the node as a statement, returning how control leaves it. An expression
+    // used as a statement is simply evaluated for its side effects.
+    public ReturnType run() throws Exception {
+        execute();
+        return ReturnType.NONE;
+    }
+
+    // Returns the truth of a value, as used by conditions and the boolean
+    // operators: a number (or a string that is a number) is true unless it is 0,
+    // and any other string is true unless it is empty
+    public static boolean isTrue(InterpreterDataType value) {
+        if (value.isNumeric()) {
+            return value.getNumber() != 0;
+        }
+        return !value.get().isEmpty();
+    }
+
+    // Returns the shared value for the result of a comparison or boolean operation
+    public static InterpreterDataType bool(boolean value) {
+        return value ? Interpreter.TRUE : Interpreter.FALSE;
+    }
+
+    // Compares two values, numerically if both are numeric and as strings
+    // otherwise; returns a negative number, zero, or a positive number like
+    // compareTo(). A number compared with a string is converted with CONVFMT.
+    public static int compare(InterpreterDataType left, InterpreterDataType right, NumberConverter conversion) {
+        if (left.isNumeric() && right.isNumeric()) {
+            return compareNumbers(left.getNumber(), right.getNumber());
+        }
+        return left.get(conversion).compareTo(right.get(conversion));
+    }
+
+    // Compares two numbers the way compare() does
+    public static int compareNumbers(double left, double right) {
+        if (left < right) {
+            return -1;
+        }
+        return left > right ? 1 : 0;
+    }
+
+    // Returns the number to divide by, refusing to divide by zero
+    public static double divisor(InterpreterDataType value) throws Exception {
+        double divisor = value.getNumber();
+        if (divisor == 0) {
+            throw new Exception("Division by zero");
+        }
+        return divisor;
+    }
+
+    // Converts the value following a $ into a field index; a value that isn't a
+    // number refers to $0, as in AWK
+    public static int fieldIndex(InterpreterDataType value) throws Exception {
+        int index = (int) value.getNumber();
+        if (index < 0) {
+            throw new Exception("Invalid field index: " + value.get());
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,408 @@
+import java.util.HashMap;
+import java.util.LinkedList;
+
+//Turns the parser's AST into the tree of ExecNodes that the interpreter runs. This
+//is the only place that looks at what kind of AST node it has; it does so once per
+//node of the program, and picks an ExecNode class that already knows which
+//operator, variable, or function it deals with.
+public class ExecNodeBuilder {
+
+    private Interpreter interpreter;
+    private HashMap<String, FunctionDefinitionNode> functions;
+    private HashMap<String, ValueExecNodes.UserFunction> userFunctions;
+
+    // Builds every function defined in the program. All of them are created before
+    // any of their bodies is built, so a call can be built before the function it
+    // calls, which recursion needs.
+    public ExecNodeBuilder(Interpreter interpreter, HashMap<String, FunctionDefinitionNode> functions)
+            throws Exception {
+        this.interpreter = interpreter;
+        this.functions = functions;
+        userFunctions = new HashMap<>();
+        for (FunctionDefinitionNode definition : functions.values()) {
+            if (definition.getClass() == FunctionDefinitionNode.class) {
+                userFunctions.put(definition.getName(),
+                        new ValueExecNodes.UserFunction(definition.getName(), definition.getParams().size()));
+            }
+        }
+        for (FunctionDefinitionNode definition : functions.values()) {
+            if (definition.getClass() == FunctionDefinitionNode.class) {
+                userFunctions.get(definition.getName()).setBody(buildStatements(definition.getStatements()));
+            }
+        }
+    }
+
+    // Returns the function defined in the program with the given name
+    public ValueExecNodes.UserFunction getFunction(String name) {
+        return userFunctions.get(name);
+    }
+
+    // Builds the pattern-action blocks of one section of the program
+    public ExecNode[] buildBlocks(LinkedList<BlockNode> blocks) throws Exception {
+        ExecNode[] built = new ExecNode[blocks.size()];
+        int i = 0;
+        for (BlockNode block : blocks) {
+            built[i++] = buildBlock(block);
+        }
+        return built;
+    }
+
+    public ExecNode buildBlock(BlockNode block) throws Exception {
+        ExecNode pattern = block.getCondition() == null ? null : build(block.getCondition());
+        return new StatementExecNodes.PatternAction(pattern, buildStatements(block.getStatements()));
+    }
+
+    // Builds a list of statements into a single node that runs them in order
+    public ExecNode buildStatements(LinkedList<Node> statements) throws Exception {
+        ExecNode[] built = new ExecNode[statements.size()];
+        int i = 0;
+        for (Node statement : statements) {
+            built[i++] = buildStatement(statement);
+        }
+        return new StatementExecNodes.Sequence(built);
+    }
+
+    // Builds a statement; anything that isn't one of the statement nodes is an
+    // expression evaluated for its side effects
+    public ExecNode buildStatement(Node statement) throws Exception {
+
+        // =============BREAK/CONTINUE=============
+        if (statement.getClass() == BreakNode.class) {
+            return new StatementExecNodes.Break();
+        } else if (statement.getClass() == ContinueNode.class) {
+            return new StatementExecNodes.Continue();
+        }
+
+        // =============DELETE=============
+        else if (statement.getClass() == DeleteNode.class) {
+            Node array = ((DeleteNode) statement).getArray();
+            if (array.getClass() != VariableReferenceNode.class) {
+                throw new Exception("Syntax error: invalid type on delete");
+            }
+            VariableReferenceNode variable = (VariableReferenceNode) array;
+            ExecNode index = variable.getIndex() == null ? null : build(variable.getIndex());
+            return new StatementExecNodes.Delete(interpreter, variable, index);
+        }
+
+        // =============DO=WHILE=============
+        else if (statement.getClass() == DoWhileNode.class) {
+            DoWhileNode dwNode = (DoWhileNode) statement;
+            return new StatementExecNodes.DoWhile(build(dwNode.getCondition()),
+                    buildStatements(dwNode.getBlock().getStatements()));
+        }
+
+        // =============FOR=============
+        else if (statement.getClass() == ForNode.class) {
+            ForNode fNode = (ForNode) statement;
+            return new StatementExecNodes.For(
+                    fNode.getInit() == null ? null : buildStatement(fNode.getInit()),
+                    fNode.getCondition() == null ? null : build(fNode.getCondition()),
+                    fNode.getInc() == null ? null : buildStatement(fNode.getInc()),
+                    buildStatements(fNode.getBlock().getStatements()));
+        }
+
+        // =============FOR=IN=============
+        // The condition has to be an IN operation between two plain variables: the
+        // loop variable and the array
+        else if (statement.getClass() == ForInNode.class) {
+            ForInNode fNode = (ForInNode) statement;
+            if (fNode.getCondition().getClass() != OperationNode.class) {
+                throw new Exception("Invalid type inside of for");
+            }
+            OperationNode oNode = (OperationNode) fNode.getCondition();
+            if (oNode.getOperation() != OperationNode.Operations.IN) {
+                throw new Exception("Invalid operation type inside of for");
+            }
+            if (oNode.getLeft().getClass() != VariableReferenceNode.class) {
+                throw new Exception("Key is not a valid variable in for-in");
+            }
+            if (!oNode.getRight().isPresent()) {
+                throw new Exception("No right side present on IN statement");
+            }
+            if (oNode.getRight().get().getClass() != VariableReferenceNode.class) {
+                throw new Exception("Array in for-in is not a variable");
+            }
+            return new StatementExecNodes.ForIn(interpreter, (VariableReferenceNode) oNode.getLeft(),
+                    (VariableReferenceNode) oNode.getRight().get(),
+                    buildStatements(fNode.getBlock().getStatements()));
+        }
+
+        // =============IF=============
+        // The chain of else-ifs becomes a chain of Ifs, ending with the else block if
+        // there is one
+        else if (statement.getClass() == IfNode.class) {
+            IfNode ifNode = (IfNode) statement;
+            ExecNode otherwise = null;
+            if (ifNode.getNext() != null && ifNode.getNext().getClass() == BlockNode.class) {
+                otherwise = buildStatements(((BlockNode) ifNode.getNext()).getStatements());
+            } else if (ifNode.getNext() != null) {
+                otherwise = buildStatement(ifNode.getNext());
+            }
+            return new StatementExecNodes.If(build(ifNode.getCondition()),
+                    buildStatements(ifNode.getBlock().getStatements()), otherwise);
+        }
+
+        // =============RETURN=============
+        else if (statement.getClass() == ReturnNode.class) {
+            Node value = ((ReturnNode) statement).getValue();
+            return new StatementExecNodes.Return(interpreter, value == null ? null : build(value));
+        }
+
+        // =============NEXT/NEXTFILE/EXIT=============
+        // The parser gives these as calls; they only make sense as statements
+        else if (isJump(statement)) {
+            FunctionCallNode call = (FunctionCallNode) statement;
+            if (call.getName().equals("next")) {
+                return new StatementExecNodes.Next();
+            } else if (call.getName().equals("nextfile")) {
+                return new StatementExecNodes.NextFile();
+            }
+            return new StatementExecNodes.Exit(interpreter,
+                    call.getParams().isEmpty() ? null : build(call.getParams().getFirst()));
+        }
+
+        // =============WHILE=============
+        else if (statement.getClass() == WhileNode.class) {
+            WhileNode wNode = (WhileNode) statement;
+            return new StatementExecNodes.While(build(wNode.getCondition()),
+                    buildStatements(wNode.getBlock().getStatements()));
+        }
+
+        else if (statement.getClass() == BlockNode.class) {
+            return buildStatements(((BlockNode) statement).getStatements());
+        }
+
+        return build(statement);
+    }
+
+    // Builds an expression
+    public ExecNode build(Node node) throws Exception {
+
+        // =============ASSIGNMENT=============
+        if (node.getClass() == AssignmentNode.class) {
+            AssignmentNode aNode = (AssignmentNode) node;
+            ExecNode value = build(aNode.getRight());
+
+            if (aNode.getLeft().getClass() == VariableReferenceNode.class) {
+                VariableReferenceNode left = (VariableReferenceNode) aNode.getLeft();
+                if (left.getIndex() != null) {
+                    return new ValueExecNodes.AssignElement(interpreter, left, build(left.getIndex()), value);
+                }
+                if (left.isLocal()) {
+                    return new ValueExecNodes.AssignLocal(interpreter, left.getSlot(), value);
+                }
+                if (isSpecial(left.getSlot())) {
+                    return new ValueExecNodes.AssignSpecial(interpreter, left.getSlot(), value);
+                }
+                return new ValueExecNodes.AssignGlobal(interpreter, left.getSlot(), value);
+            }
+
+            if (aNode.getLeft().getClass() == OperationNode.class
+                    && ((OperationNode) aNode.getLeft()).getOperation() == OperationNode.Operations.DOLLAR) {
+                return new ValueExecNodes.AssignField(interpreter, build(((OperationNode) aNode.getLeft()).getLeft()),
+                        value);
+            }
+            throw new Exception("Assigning to invalid type");
+        }
+
+        // =============CONSTANT=============
+        // Number literals are numbers, everything else is a string
+        else if (node.getClass() == ConstantNode.class) {
+            ConstantNode cNode = (ConstantNode) node;
+            if (cNode.isNumber()) {
+                return new ValueExecNodes.Constant(new InterpreterDataType(cNode.getNumericValue()));
+            }
+            return new ValueExecNodes.Constant(new InterpreterDataType(cNode.getValue()));
+        }
+
+        // =============FUNCTION-CALL=============
+        else if (node.getClass() == FunctionCallNode.class) {
+            return buildCall((FunctionCallNode) node);
+        }
+
+        // =============PATTERN=============
+        else if (node.getClass() == PatternNode.class) {
+            throw new Exception("Can not pass pattern to a function");
+        }
+
+        // =============TERNARY=============
+        else if (node.getClass() == TernaryNode.class) {
+            TernaryNode tNode = (TernaryNode) node;
+            return new ValueExecNodes.Ternary(build(tNode.getCondition()), build(tNode.getTrue()),
+                    build(tNode.getFalse()));
+        }
+
+        // =============VARIABLE-REFERENCE=============
+        else if (node.getClass() == VariableReferenceNode.class) {
+            VariableReferenceNode vNode = (VariableReferenceNode) node;
+            if (vNode.getIndex() != null) {
+                return new ValueExecNodes.ArrayElement(interpreter, vNode, build(vNode.getIndex()));
+            }
+            if (vNode.isLocal()) {
+                return new ValueExecNodes.LocalVariable(interpreter, vNode.getSlot());
+            }
+            return new ValueExecNodes.GlobalVariable(interpreter, vNode.getSlot());
+        }
+
+        // =============OPERATION=============
+        else if (node.getClass() == OperationNode.class) {
+            return buildOperation((OperationNode) node);
+        }
+
+        throw new Exception("Not a valid statement");
+    }
+
+    // Builds the node for an operator
+    private ExecNode buildOperation(OperationNode oNode) throws Exception {
+        OperationNode.Operations op = oNode.getOperation();
+
+        // ----------MATCH/NOTMATCH----------
+        // The right side must be a pattern
+        if (op == OperationNode.Operations.MATCH || op == OperationNode.Operations.NOTMATCH) {
+            if (!oNode.getRight().isPresent() || oNode.getRight().get().getClass() != PatternNode.class) {
+                throw new Exception("Invalid type on match");
+            }
+            PatternNode pattern = (PatternNode) oNode.getRight().get();
+            if (op == OperationNode.Operations.MATCH) {
+                return new OperatorExecNodes.Match(interpreter, build(oNode.getLeft()), pattern);
+            }
+            return new OperatorExecNodes.NotMatch(interpreter, build(oNode.getLeft()), pattern);
+        }
+
+        // ----------INCREMENT/DECREMENT----------
+        if (op == OperationNode.Operations.PREINC || op == OperationNode.Operations.POSTINC
+                || op == OperationNode.Operations.PREDEC || op == OperationNode.Operations.POSTDEC) {
+            if (oNode.getLeft().getClass() != VariableReferenceNode.class) {
+                throw new Exception("Invalid operand for " + op);
+            }
+            VariableReferenceNode variable = (VariableReferenceNode) oNode.getLeft();
+            double delta = op == OperationNode.Operations.PREINC || op == OperationNode.Operations.POSTINC ? 1 : -1;
+            boolean post = op == OperationNode.Operations.POSTINC || op == OperationNode.Operations.POSTDEC;
+            if (variable.getIndex() != null) {
+                return new ValueExecNodes.IncrementElement(interpreter, variable, build(variable.getIndex()), delta,
+                        post);
+            }
+            return new ValueExecNodes.IncrementVariable(interpreter, variable, delta, post);
+        }
+
+        ExecNode left = build(oNode.getLeft());
+
+        // ----------UNARY----------
+        if (!oNode.getRight().isPresent()) {
+            if (op == OperationNode.Operations.NOT) {
+                return new OperatorExecNodes.Not(left);
+            } else if (op == OperationNode.Operations.DOLLAR) {
+                if (left.getClass() == ValueExecNodes.Constant.class) {
+                    int index = ExecNode.fieldIndex(((ValueExecNodes.Constant) left).getValue());
+                    return new ValueExecNodes.ConstantField(interpreter, index);
+                }
+                return new ValueExecNodes.Field(interpreter, left);
+            } else if (op == OperationNode.Operations.UNARYPOS) {
+                return new OperatorExecNodes.Plus(left);
+            } else if (op == OperationNode.Operations.UNARYNEG) {
+                return new OperatorExecNodes.Negate(left);
+            }
+            throw new Exception("Missing right side of " + op);
+        }
+
+        // ----------BINARY----------
+        ExecNode right = build(oNode.getRight().get());
+        switch (op) {
+        case ADD:
+            return new OperatorExecNodes.Add(left, right);
+        case SUBTRACT:
+            return new OperatorExecNodes.Subtract(left, right);
+        case MULTIPLY:
+            return new OperatorExecNodes.Multiply(left, right);
+        case DIVIDE:
+            return new OperatorExecNodes.Divide(left, right);
+        case MODULO:
+            return new OperatorExecNodes.Modulo(left, right);
+        case EXPONENT:
+            return new OperatorExecNodes.Exponent(left, right);
+        case EQ:
+            return new OperatorExecNodes.Equal(interpreter, left, right);
+        case NE:
+            return new OperatorExecNodes.NotEqual(interpreter, left, right);
+        case LT:
+            return new OperatorExecNodes.Less(interpreter, left, right);
+        case LE:
+            return new OperatorExecNodes.LessOrEqual(interpreter, left, right);
+        case GT:
+            return new OperatorExecNodes.Greater(interpreter, left, right);
+        case GE:
+            return new OperatorExecNodes.GreaterOrEqual(interpreter, left, right);
+        case AND:
+            return new OperatorExecNodes.And(left, right);
+        case OR:
+            return new OperatorExecNodes.Or(left, right);
+        case CONCATENATION:
+            return new OperatorExecNodes.Concatenate(interpreter, left, right);
+        case IN:
+            return new OperatorExecNodes.In(interpreter, left, right);
+        default:
+            throw new Exception("Invalid binary operation " + op);
+        }
+    }
+
+    // Builds a function call. Arguments that the function uses as arrays are passed
+    // as the array itself, so the function can fill an array that doesn't exist yet.
+    private ExecNode buildCall(FunctionCallNode call) throws Exception {
+        FunctionDefinitionNode definition = functions.get(call.getName());
+        if (definition == null) {
+            throw new Exception("Function not defined: " + call.getName());
+        }
+        LinkedList<Node> parameters = call.getParams();
+        if (!definition.isVariadic() && parameters.size() > definition.getParams().size()) {
+            throw new Exception("Invalid number of parameters passed to function: " + call.getName());
+        }
+
+        ExecNode[] arguments = new ExecNode[parameters.size()];
+        int i = 0;
+        for (Node parameter : parameters) {
+            if (definition.isArrayParameter(i) && parameter.getClass() == VariableReferenceNode.class
+                    && ((VariableReferenceNode) parameter).getIndex() == null) {
+                arguments[i] = new ValueExecNodes.ArrayReference(interpreter, (VariableReferenceNode) parameter);
+            } else {
+                arguments[i] = build(parameter);
+            }
+            i++;
+        }
+
+        if (definition.getClass() == FunctionDefinitionNode.class) {
+            return new ValueExecNodes.UserCall(interpreter, userFunctions.get(call.getName()), arguments);
+        }
+
+        BuiltInFunction builtIn = ((BuiltInFunctionDefinitionNode) definition).execute;
+        switch (arguments.length) {
+        case 0:
+            return new ValueExecNodes.BuiltInCall0(builtIn);
+        case 1:
+            return new ValueExecNodes.BuiltInCall1(builtIn, arguments[0]);
+        case 2:
+            return new ValueExecNodes.BuiltInCall2(builtIn, arguments[0], arguments[1]);
+        case 3:
+            return new ValueExecNodes.BuiltInCall3(builtIn, arguments[0], arguments[1], arguments[2]);
+        default:
+            return new ValueExecNodes.BuiltInCallN(builtIn, arguments);
+        }
+    }
+
+    // Returns true if a statement is next, nextfile or exit, which leave the blocks
+    // being run rather than call a function
+    static boolean isJump(Node statement) {
+        if (statement.getClass() != FunctionCallNode.class) {
+            return false;
+        }
+        String name = ((FunctionCallNode) statement).getName();
+        return name.equals("next") || name.equals("nextfile") || name.equals("exit");
+    }
+
+    // Returns true for the built-in variables that the interpreter has to act on
+    // when they are assigned
+    static boolean isSpecial(int slot) {
+        return slot == VariableResolver.NF || slot == VariableResolver.FS || slot == VariableResolver.CONVFMT
+                || slot == VariableResolver.OFMT;
+    }
+
+}
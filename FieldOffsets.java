@@ -0,0 +1,36 @@
+import java.util.Arrays;
+
+//Holds the start and end offsets of the fields found in a record. Fields are
+//indexed from 1, the same way they are referenced in AWK ($1, $2, etc.)
+public class FieldOffsets {
+
+    private int[] starts;
+    private int[] ends;
+
+    public FieldOffsets() {
+        starts = new int[16];
+        ends = new int[16];
+    }
+
+    // Records the boundaries of the field after the given count, growing the
+    // arrays if needed, and returns the new number of fields
+    public int add(int count, int start, int end) {
+        count++;
+        if (count >= starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        return count;
+    }
+
+    public int getStart(int field) {
+        return starts[field];
+    }
+
+    public int getEnd(int field) {
+        return ends[field];
+    }
+
+}
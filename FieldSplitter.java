@@ -0,0 +1,56 @@
+//Represents a way of splitting a record into fields for a particular value of FS.
+//The right splitter is picked once, whenever FS is assigned, by forSeparator();
+//only a separator that really is a regular expression goes through the regex
+//engine, everything else is handled by a plain scan over the characters.
+public interface FieldSplitter {
+
+    // Finds the fields of text, storing their boundaries in offsets, and returns
+    // the number of fields. Stops once limit fields have been found.
+    public int split(CharSequence text, FieldOffsets offsets, int limit);
+
+    // Picks the splitter for a field separator, following AWK: a single space
+    // splits on runs of blanks, any other single character is taken literally,
+    // and anything longer is a regular expression
+    public static FieldSplitter forSeparator(String separator) {
+        return forSeparator(separator, null);
+    }
+
+    // Picks the splitter for a field separator, taking a separator that is a
+    // regular expression from the cache, if one is given
+    public static FieldSplitter forSeparator(String separator, RegexCache regexes) {
+        if (separator.equals(" ")) {
+            return new WhitespaceFieldSplitter();
+        }
+        if (separator.length() == 1) {
+            return new CharFieldSplitter(separator.charAt(0));
+        }
+        if (separator.length() == 2 && separator.charAt(0) == '\\') {
+            char escaped = separator.charAt(1);
+            if (escaped == 't') {
+                return new CharFieldSplitter('\t');
+            } else if (escaped == 'n') {
+                return new CharFieldSplitter('\n');
+            } else if (escaped == 'r') {
+                return new CharFieldSplitter('\r');
+            } else if (!Character.isLetterOrDigit(escaped)) {
+                return new CharFieldSplitter(escaped);
+            }
+        }
+        if (!hasMetacharacters(separator)) {
+            return new StringFieldSplitter(separator);
+        }
+        return new RegexFieldSplitter(regexes == null ? Regex.compile(separator) : regexes.get(separator));
+    }
+
+    // Returns true if the separator contains any character with a special
+    // meaning in a regular expression
+    public static boolean hasMetacharacters(String separator) {
+        for (int i = 0; i < separator.length(); i++) {
+            if ("\\^$.[]|()*+?{}".indexOf(separator.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,61 @@
+//Works out which fields of a record a program can ever touch, so the LineHandler
+//can stop splitting a line once it has found the highest field the program reads.
+//Any use that needs the real number of fields - NF, a field index that is not a
+//constant, or assigning to a field (which rebuilds $0 out of every field) - means
+//the whole line has to be split.
+public class FieldUsageAnalyzer extends NodeWalker {
+
+    private int maxField;
+    private boolean dynamicField;
+    private boolean usesNF;
+    private boolean assignsField;
+
+    public FieldUsageAnalyzer(ProgramNode program) {
+        walk(program);
+    }
+
+    protected void visit(Node node) {
+        if (node.getClass() == OperationNode.class) {
+            OperationNode operation = (OperationNode) node;
+            if (operation.getOperation() == OperationNode.Operations.DOLLAR) {
+                int index = constantIndex(operation.getLeft());
+                if (index < 0) {
+                    dynamicField = true;
+                } else {
+                    maxField = Math.max(maxField, index);
+                }
+            }
+        } else if (node.getClass() == VariableReferenceNode.class) {
+            if (((VariableReferenceNode) node).getName().equals("NF")) {
+                usesNF = true;
+            }
+        } else if (node.getClass() == AssignmentNode.class) {
+            Node target = ((AssignmentNode) node).getLeft();
+            if (target.getClass() == OperationNode.class
+                    && ((OperationNode) target).getOperation() == OperationNode.Operations.DOLLAR
+                    && constantIndex(((OperationNode) target).getLeft()) != 0) {
+                assignsField = true;
+            }
+        }
+    }
+
+    // Returns the field index given by a constant, or -1 if the index is only
+    // known at runtime
+    private int constantIndex(Node index) {
+        if (index.getClass() != ConstantNode.class) {
+            return -1;
+        }
+        // A non-numeric constant has the number 0, and so refers to $0
+        return Math.max(0, (int) new InterpreterDataType(((ConstantNode) index).getValue()).getNumber());
+    }
+
+    // Returns the number of fields that have to be split out of each line, or
+    // Integer.MAX_VALUE when every field is needed
+    public int getFieldLimit() {
+        if (dynamicField || usesNF || assignsField) {
+            return Integer.MAX_VALUE;
+        }
+        return maxField;
+    }
+
+}
@@ -8,11 +8,16 @@ public class FunctionDefinitionNode extends Node {
     private LinkedList<Node> parameterNames;
     private BlockNode block;
 
+    // Which parameters the function uses as arrays, filled in by VariableResolver;
+    // the caller's array is passed by reference to these
+    private boolean[] arrayParameters;
+
     public FunctionDefinitionNode(String name, LinkedList<Node> parameterNames,
             BlockNode block) {
         this.name = name;
         this.parameterNames = parameterNames;
         this.block = block;
+        arrayParameters = new boolean[parameterNames.size()];
     }
 
     public String getName() {
@@ -27,6 +32,14 @@ public class FunctionDefinitionNode extends Node {
         return block.getStatements();
     }
 
+    public void setArrayParameter(int index) {
+        arrayParameters[index] = true;
+    }
+
+    public boolean isArrayParameter(int index) {
+        return index < arrayParameters.length && arrayParameters[index];
+    }
+
     public boolean isVariadic() {
         return false;
     }
@@ -1,83 +1,182 @@
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.regex.*;
 
 //Represents an interpreter, which in short, assigns meaning and functionality
 //to an awk program. Currently implemented: global variables (FILENAME, FS, NR,
 //etc.), built-in functions (print, next, split, etc.), line handler
 public class Interpreter {
 
-    public HashMap<String, InterpreterDataType> variables;
+    // Global variables by slot (see VariableResolver); a slot stays null until the
+    // variable is first assigned
+    InterpreterDataType[] globals;
     private HashMap<String, FunctionDefinitionNode> functions;
-    private LineHandler handler;
+    LineHandler handler;
     private ProgramNode tree;
 
+    // The program's blocks, built into ExecNodes once the functions are known
+    private ExecNode[] beginBlocks;
+    private ExecNode[] blocks;
+    private ExecNode[] endBlocks;
+
+    // Skips the main blocks whose patterns can't match the record, or null when
+    // no block's condition gives it anything to look for
+    private BlockPrefilter prefilter;
+
+    // Shared values for missing fields and for true/false results; values are
+    // never modified, so one of each will do
+    static final InterpreterDataType EMPTY = new InterpreterDataType("");
+    static final InterpreterDataType TRUE = new InterpreterDataType(1);
+    static final InterpreterDataType FALSE = new InterpreterDataType(0);
+
+    // The value of a variable that has never been assigned; it is a strnum whose
+    // string is empty, so it compares equal to both "" and 0
+    static final InterpreterDataType UNINITIALIZED = InterpreterDataType.uninitialized();
+
+    // The call stack: the frames of all running functions, one after another. Each
+    // frame holds one slot per parameter of its function, starting at framePointer
+    // for the innermost one, and is preceded by a slot for the value the function
+    // returns; stackTop is where the next frame will go.
+    InterpreterDataType[] stack;
+    int framePointer;
+    private int stackTop;
+
+    // The status given by exit, which Main exits the program with
+    private int exitStatus;
+
+    // Field boundaries found by split(), kept apart from those of the current line
+    private FieldOffsets splitOffsets;
+
+    // Converts numbers for print, recompiled whenever OFMT is assigned to a new
+    // format
+    private NumberConverter outputConverter;
+
+    // Converts numbers to strings everywhere else, recompiled whenever CONVFMT is
+    // assigned to a new format
+    NumberConverter conversion;
+
+    // The regular expressions built from strings at runtime, compiled once each
+    private RegexCache regexes;
+
+    // How the input file is read: STREAM decodes it through a buffered reader,
+    // while MAPPED memory maps it and only decodes the records that get used
+    public enum InputMode {
+        STREAM, MAPPED
+    }
+
+    // How the program is run: TREE runs the tree of ExecNodes built from it, while
+    // COMPILED compiles it to JVM bytecode first (see BytecodeCompiler)
+    public enum ExecutionMode {
+        TREE, COMPILED
+    }
+
+    public Interpreter(ProgramNode tree, String path) throws Exception {
+        this(tree, path, InputMode.STREAM, ExecutionMode.TREE);
+    }
+
+    public Interpreter(ProgramNode tree, String path, InputMode mode) throws Exception {
+        this(tree, path, mode, ExecutionMode.TREE);
+    }
+
     // Constructor; initializes the global variables, functions, and built-in
     // functions
-    public Interpreter(ProgramNode tree, String path) throws IOException {
+    public Interpreter(ProgramNode tree, String path, InputMode mode, ExecutionMode execution) throws Exception {
         this.tree = tree;
-        variables = new HashMap<>();
+        VariableResolver resolver = new VariableResolver(tree);
+        globals = new InterpreterDataType[resolver.getGlobalCount()];
+        stack = new InterpreterDataType[256];
+        framePointer = 1;
+        stackTop = 1;
         functions = new HashMap<>();
+        splitOffsets = new FieldOffsets();
+        regexes = new RegexCache(RegexCache.DEFAULT_CAPACITY);
         if (path.isEmpty()) {
-            handler = new LineHandler(new LinkedList<>());
+            handler = new LineHandler(new StreamRecordReader(Reader.nullReader()));
+        } else if (mode == InputMode.MAPPED) {
+            handler = new LineHandler(new MappedRecordReader(Paths.get(path)));
         } else {
-            handler = new LineHandler(Files.readAllLines(Paths.get(path)));
+            handler = new LineHandler(
+                    new StreamRecordReader(Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)));
         }
 
         // Global variable default initialization
-        variables.put("FILENAME", new InterpreterDataType(path));
-        variables.put("OFMT", new InterpreterDataType("%.6g"));
-        variables.put("OFS", new InterpreterDataType(" "));
-        variables.put("ORS", new InterpreterDataType("\n"));
-        variables.put("FS", new InterpreterDataType(" "));
-        variables.put("NF", new InterpreterDataType("0"));
-        variables.put("NR", new InterpreterDataType("0"));
-        variables.put("FNR", new InterpreterDataType("0"));
+        globals[VariableResolver.FILENAME] = new InterpreterDataType(path);
+        globals[VariableResolver.OFMT] = new InterpreterDataType("%.6g");
+        globals[VariableResolver.CONVFMT] = new InterpreterDataType("%.6g");
+        conversion = new NumberConverter("%.6g");
+        outputConverter = new NumberConverter("%.6g");
+        globals[VariableResolver.OFS] = new InterpreterDataType(" ");
+        globals[VariableResolver.ORS] = new InterpreterDataType("\n");
+        globals[VariableResolver.FS] = new InterpreterDataType(" ");
+        globals[VariableResolver.NF] = new InterpreterDataType(0);
+        globals[VariableResolver.NR] = new InterpreterDataType(0);
+        globals[VariableResolver.FNR] = new InterpreterDataType(0);
+
+        // Only split lines as far as the program will ever look
+        handler.setFieldLimit(new FieldUsageAnalyzer(tree).getFieldLimit());
 
         // Populating the hashmap with custom function
         for (int i = 0; i < tree.funcDefNodes.size(); i++) {
             functions.put(tree.funcDefNodes.get(i).getName(), tree.funcDefNodes.get(i));
         }
 
-        // Populating the hashmap with built in functions, using lambda expressions for
-        // streamlining and conciseness.
-        // For summary, these functions are: print, printf, getline, next, gsub, match,
+        // Populating the hashmap with built in functions, each adapting the entry
+        // points of BuiltInFunction for the numbers of arguments it takes to its
+        // implementation method below.
+        // For summary, these functions are: print, printf, getline, gsub, match,
         // sub, index, length, split, substr, tolower, toupper
         LinkedList<Node> parameters1 = new LinkedList<>();
         parameters1.add(new VariableReferenceNode("string", null));
         BuiltInFunctionDefinitionNode print = new BuiltInFunctionDefinitionNode("print", parameters1, null, true);
-        print.execute = this::printImplementation;
+        print.execute = new BuiltInFunction() {
+            public InterpreterDataType callN(InterpreterDataType[] arguments) {
+                return printImplementation(arguments);
+            }
+        };
         functions.put("print", print);
 
         LinkedList<Node> parameters2 = new LinkedList<>();
         parameters2.add(new VariableReferenceNode("string", null));
         parameters2.add(new VariableReferenceNode("variadic", null));
         BuiltInFunctionDefinitionNode printf = new BuiltInFunctionDefinitionNode("printf", parameters2, null, true);
-        printf.execute = this::printfImplementation;
+        printf.execute = new BuiltInFunction() {
+            public InterpreterDataType callN(InterpreterDataType[] arguments) {
+                return printfImplementation(arguments);
+            }
+        };
         functions.put("printf", printf);
 
         BuiltInFunctionDefinitionNode getline = new BuiltInFunctionDefinitionNode("getline", new LinkedList<Node>(),
                 null, false);
-        getline.execute = this::getlineImplementation;
+        getline.execute = new BuiltInFunction() {
+            public InterpreterDataType call0() {
+                return getlineImplementation();
+            }
+        };
         functions.put("getline", getline);
 
-        BuiltInFunctionDefinitionNode next = new BuiltInFunctionDefinitionNode("next", new LinkedList<Node>(), null,
-                false);
-        next.execute = this::nextImplementation;
-        functions.put("next", next);
-
         LinkedList<Node> parameters3 = new LinkedList<>();
         parameters3.add(new VariableReferenceNode("regexp", null));
         parameters3.add(new VariableReferenceNode("replacement", null));
         parameters3.add(new VariableReferenceNode("target", null));
         BuiltInFunctionDefinitionNode gsub = new BuiltInFunctionDefinitionNode("gsub", parameters3, null, false);
-        gsub.execute = this::gsubImplementation;
+        gsub.execute = new BuiltInFunction() {
+            public InterpreterDataType call2(InterpreterDataType regexp, InterpreterDataType replacement) {
+                return gsubImplementation(regexp, replacement, handler.getField(0));
+            }
+
+            public InterpreterDataType call3(InterpreterDataType regexp, InterpreterDataType replacement,
+                    InterpreterDataType target) {
+                return gsubImplementation(regexp, replacement, target);
+            }
+        };
         functions.put("gsub", gsub);
 
         LinkedList<Node> parameters4 = new LinkedList<>();
@@ -85,7 +184,17 @@ public class Interpreter {
         parameters4.add(new VariableReferenceNode("regexp", null));
         parameters4.add(new VariableReferenceNode("array", null));
         BuiltInFunctionDefinitionNode match = new BuiltInFunctionDefinitionNode("match", parameters4, null, false);
-        match.execute = this::matchImplementation;
+        match.setArrayParameter(2);
+        match.execute = new BuiltInFunction() {
+            public InterpreterDataType call2(InterpreterDataType string, InterpreterDataType regexp) {
+                return matchImplementation(string, regexp);
+            }
+
+            public InterpreterDataType call3(InterpreterDataType string, InterpreterDataType regexp,
+                    InterpreterDataType array) {
+                return matchImplementation(string, regexp);
+            }
+        };
         functions.put("match", match);
 
         LinkedList<Node> parameters5 = new LinkedList<>();
@@ -93,20 +202,41 @@ public class Interpreter {
         parameters5.add(new VariableReferenceNode("replacement", null));
         parameters5.add(new VariableReferenceNode("target", null));
         BuiltInFunctionDefinitionNode sub = new BuiltInFunctionDefinitionNode("sub", parameters5, null, false);
-        sub.execute = this::subImplementation;
+        sub.execute = new BuiltInFunction() {
+            public InterpreterDataType call2(InterpreterDataType regexp, InterpreterDataType replacement) {
+                return subImplementation(regexp, replacement, handler.getField(0));
+            }
+
+            public InterpreterDataType call3(InterpreterDataType regexp, InterpreterDataType replacement,
+                    InterpreterDataType target) {
+                return subImplementation(regexp, replacement, target);
+            }
+        };
         functions.put("sub", sub);
 
         LinkedList<Node> parameters6 = new LinkedList<>();
         parameters6.add(new VariableReferenceNode("in", null));
         parameters6.add(new VariableReferenceNode("find", null));
         BuiltInFunctionDefinitionNode index = new BuiltInFunctionDefinitionNode("index", parameters6, null, false);
-        index.execute = this::indexImplementation;
+        index.execute = new BuiltInFunction() {
+            public InterpreterDataType call2(InterpreterDataType in, InterpreterDataType find) {
+                return indexImplementation(in, find);
+            }
+        };
         functions.put("index", index);
 
         LinkedList<Node> parameters7 = new LinkedList<>();
         parameters7.add(new VariableReferenceNode("string", null));
         BuiltInFunctionDefinitionNode length = new BuiltInFunctionDefinitionNode("length", parameters7, null, false);
-        length.execute = this::lengthImplementation;
+        length.execute = new BuiltInFunction() {
+            public InterpreterDataType call0() {
+                return lengthImplementation(handler.getField(0));
+            }
+
+            public InterpreterDataType call1(InterpreterDataType string) {
+                return lengthImplementation(string);
+            }
+        };
         functions.put("length", length);
 
         LinkedList<Node> parameters8 = new LinkedList<>();
@@ -115,7 +245,26 @@ public class Interpreter {
         parameters8.add(new VariableReferenceNode("fieldsep", null));
         parameters8.add(new VariableReferenceNode("seps", null));
         BuiltInFunctionDefinitionNode split = new BuiltInFunctionDefinitionNode("split", parameters8, null, false);
-        split.execute = this::splitImplementation;
+        split.setArrayParameter(1);
+        split.setArrayParameter(3);
+        split.execute = new BuiltInFunction() {
+            public InterpreterDataType call2(InterpreterDataType string, InterpreterDataType array)
+                    throws Exception {
+                return splitImplementation(string, array, null, null);
+            }
+
+            public InterpreterDataType call3(InterpreterDataType string, InterpreterDataType array,
+                    InterpreterDataType fieldsep) throws Exception {
+                return splitImplementation(string, array, fieldsep, null);
+            }
+
+            public InterpreterDataType callN(InterpreterDataType[] arguments) throws Exception {
+                if (arguments.length != 4) {
+                    return super.callN(arguments);
+                }
+                return splitImplementation(arguments[0], arguments[1], arguments[2], arguments[3]);
+            }
+        };
         functions.put("split", split);
 
         LinkedList<Node> parameters9 = new LinkedList<>();
@@ -123,1139 +272,777 @@ public class Interpreter {
         parameters9.add(new VariableReferenceNode("start", null));
         parameters9.add(new VariableReferenceNode("length", null));
         BuiltInFunctionDefinitionNode substr = new BuiltInFunctionDefinitionNode("substr", parameters9, null, false);
-        substr.execute = this::substrImplementation;
+        substr.execute = new BuiltInFunction() {
+            public InterpreterDataType call2(InterpreterDataType string, InterpreterDataType start) {
+                return substrImplementation(string, start, null);
+            }
+
+            public InterpreterDataType call3(InterpreterDataType string, InterpreterDataType start,
+                    InterpreterDataType length) {
+                return substrImplementation(string, start, length);
+            }
+        };
         functions.put("substr", substr);
 
         LinkedList<Node> parameters10 = new LinkedList<>();
         parameters10.add(new VariableReferenceNode("string", null));
         BuiltInFunctionDefinitionNode tolower = new BuiltInFunctionDefinitionNode("tolower", parameters10, null, false);
-        tolower.execute = this::tolowerImplementation;
+        tolower.execute = new BuiltInFunction() {
+            public InterpreterDataType call1(InterpreterDataType string) {
+                return tolowerImplementation(string);
+            }
+        };
         functions.put("tolower", tolower);
 
         LinkedList<Node> parameters11 = new LinkedList<>();
         parameters11.add(new VariableReferenceNode("string", null));
         BuiltInFunctionDefinitionNode toupper = new BuiltInFunctionDefinitionNode("toupper", parameters11, null, false);
-        toupper.execute = this::toupperImplementation;
+        toupper.execute = new BuiltInFunction() {
+            public InterpreterDataType call1(InterpreterDataType string) {
+                return toupperImplementation(string);
+            }
+        };
         functions.put("toupper", toupper);
 
+        // Only now that every function is known can parameters passed on to their
+        // array parameters be marked as arrays too
+        resolver.resolveArrayParameters(functions);
+
+        ExecNodeBuilder builder = new ExecNodeBuilder(this, functions);
+        if (execution == ExecutionMode.COMPILED) {
+            BytecodeCompiler compiler = new BytecodeCompiler(this, builder);
+            compiler.compileFunctions(functions);
+            beginBlocks = compiler.compileBlocks(tree.beginBlocks);
+            blocks = compiler.compileBlocks(tree.blocks);
+            endBlocks = compiler.compileBlocks(tree.endBlocks);
+        } else {
+            beginBlocks = builder.buildBlocks(tree.beginBlocks);
+            blocks = builder.buildBlocks(tree.blocks);
+            endBlocks = builder.buildBlocks(tree.endBlocks);
+        }
+        prefilter = BlockPrefilter.forBlocks(tree.blocks);
     }
 
     // Helper class that splits lines into their fields (e.g $0, $1, etc.) for
-    // easy usage
+    // easy usage. Lines are pulled one at a time from a RecordReader, so the
+    // input is never held in memory as a whole. Splitting is done lazily: a record
+    // only has its field boundaries worked out once a field or NF is referenced,
+    // and a field's value is only created once that particular field is read.
+    // Fields are kept in an array indexed by field number, with NF kept in step
+    // with it, and are forgotten as soon as the next record is read. Assigning to
+    // a field only marks $0 as out of date; it is rebuilt with OFS the next time
+    // it is read, so a record can have any number of fields assigned for the cost
+    // of a single rebuild.
     public class LineHandler {
 
-        private List<String> file;
-
-        public LineHandler(List<String> file) {
-            this.file = file;
-            variables.replace("FNR", new InterpreterDataType("0"));
-            variables.put("$0", new InterpreterDataType(file.get(0)));
+        private RecordReader reader;
+
+        // The current record, and the start/end offsets of its fields once split
+        private CharSequence record;
+        private InterpreterDataType recordValue;
+        private boolean recordDirty;
+        private boolean split;
+        private int fieldCount;
+        private FieldOffsets offsets;
+
+        // The values of the fields, from index 1; a null entry below fieldCount is a
+        // field that hasn't been read yet and still has to be cut out of the record
+        private InterpreterDataType[] fields;
+
+        // The splitter for the current value of FS, and the one that was current
+        // when the record was read, which is the one the record gets split with
+        private FieldSplitter splitter;
+        private FieldSplitter recordSplitter;
+
+        // The highest field the program can reference; splitting stops there
+        private int fieldLimit;
+
+        // Counts the records that have been set, so a stand-in for NF can tell whether
+        // it still belongs to the current record
+        private long generation;
+
+        public LineHandler(RecordReader reader) {
+            this.reader = reader;
+            record = "";
+            recordValue = new InterpreterDataType("");
+            offsets = new FieldOffsets();
+            fields = new InterpreterDataType[16];
+            splitter = new WhitespaceFieldSplitter();
+            recordSplitter = splitter;
+            fieldLimit = Integer.MAX_VALUE;
+            globals[VariableResolver.FNR] = new InterpreterDataType(0);
         }
 
-        // Splits lines into their respective fields and set the NR/FNR
-        // variables
+        // Reads the next line, sets $0 and the NR/FNR variables, and leaves the
+        // fields to be split on demand
         public boolean splitAssign() {
-            if (file.isEmpty()) {
+            if (reader == null) {
                 return false;
             }
 
-            // Reads the next line and removes it from the list to increment
-            // through the lines
-            String line = file.get(0);
-            file.remove(0);
-
-            String[] words = line.split(variables.get("FS").get());
-            variables.replace("NF", new InterpreterDataType(words.length + ""));
-
-            // Sets the $0 field to the entire line and increments through the line to
-            // assign fields
-            variables.put("$0", new InterpreterDataType(line));
-            for (int i = 1; i < words.length; i++) {
-                variables.put("$" + i, new InterpreterDataType(words[i]));
+            // Reads the next line from the input, closing the reader once the input
+            // is exhausted
+            CharSequence line;
+            try {
+                line = reader.nextRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (line == null) {
+                close();
+                return false;
             }
 
-            int NR = Integer.parseInt(variables.get("NR").get());
-            variables.put("NR", new InterpreterDataType(NR + 1 + ""));
-            int FNR = Integer.parseInt(variables.get("FNR").get());
-            variables.put("FNR", new InterpreterDataType(FNR + 1 + ""));
+            // Sets the $0 field to the entire line; a mapped record is only decoded
+            // once $0 is actually read
+            setRecord(line, new RecordDataType(line));
 
-            return true;
-        }
-
-    }
+            globals[VariableResolver.NR] = new InterpreterDataType(globals[VariableResolver.NR].getNumber() + 1);
+            globals[VariableResolver.FNR] = new InterpreterDataType(globals[VariableResolver.FNR].getNumber() + 1);
 
-    // The "main" method of the interpreter, this will run interpretBlock() on all
-    // of the blocks within our program.
-    public void interpretProgram() throws Exception {
-        for (BlockNode block : tree.beginBlocks) {
-            interpretBlock(block);
-        }
-        while (handler.splitAssign()) {
-            for (BlockNode block : tree.blocks) {
-                interpretBlock(block);
-            }
-        }
-        for (BlockNode block : tree.endBlocks) {
-            interpretBlock(block);
+            return true;
         }
-    }
 
-    // Checks a block condition for truth, otherwise runs processStatement() on all
-    // of the statements within the block.
-    public void interpretBlock(BlockNode block) throws Exception {
-        if (block.getCondition() != null) {
-            if (!getIDT(block.getCondition(), new HashMap<>()).get().equals("0")) {
-                for (Node statement : block.getStatements()) {
-                    processStatement(statement, new HashMap<>());
-                }
+        // Stops reading the input, closing the reader; from then on there are no more
+        // lines to read
+        public void close() {
+            if (reader == null) {
+                return;
             }
-        } else {
-            for (Node statement : block.getStatements()) {
-                processStatement(statement, new HashMap<>());
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+            reader = null;
         }
-    }
-
-    // Interprets the following types of node: assignment, constants, function
-    // calls, patterns, ternary, variable references, and operations(add, subtract,
-    // AND, ++, etc.). Returns the result of this interpretation, for example if a
-    // 1+1 operation node is passed in, 2 is returned within an InterpreterDataType
-    public InterpreterDataType getIDT(Node node, HashMap<String, InterpreterDataType> localVars) throws Exception {
-
-        // =============ASSIGNMENT=============
-        // Sets the target variable in the variables hash map to the value of the IDT on
-        // the right side of the assignment. If it is an array, finds the array in the
-        // hash map and adds the value to it.
-        if (node.getClass() == AssignmentNode.class) {
-
-            AssignmentNode aNode = (AssignmentNode) node;
-            if (aNode.getLeft().getClass() == VariableReferenceNode.class) {
-
-                VariableReferenceNode left = (VariableReferenceNode) aNode.getLeft();
-                InterpreterDataType right = getIDT(aNode.getRight(), localVars);
-                InterpreterDataType temp;
-
-                // If array...
-                if (left.getIndex() != null) {
 
-                    // Checks that the hash map contains the array and that it is an IADT, then adds
-                    // the value to the given index and puts it in the hashmap
-                    if ((temp = variables.get(left.getName())) != null) {
+        // Replaces the current record, which will be split again with the current FS
+        // the next time one of its fields is needed
+        private void setRecord(CharSequence line, InterpreterDataType value) {
+            record = line;
+            recordValue = value;
+            recordDirty = false;
+            recordSplitter = splitter;
+            split = false;
+            generation++;
+            globals[VariableResolver.NF] = new FieldCountDataType(line);
+        }
 
-                        if (temp.getClass() == InterpreterArrayDataType.class) {
+        // Assigns a new value to $0
+        public void setRecord(InterpreterDataType value) {
+            setRecord(value.get(conversion), value);
+        }
 
-                            InterpreterArrayDataType array = (InterpreterArrayDataType) temp;
-                            array.add(getIDT(left.getIndex(), localVars).get(), right);
+        // Picks the splitter for a new value of FS; it takes effect from the next
+        // record on
+        public void setFieldSeparator(String separator) {
+            splitter = FieldSplitter.forSeparator(separator, regexes);
+        }
 
-                            if (localVars.containsKey(left.getName()))
-                                localVars.put(left.getName(), array);
-                            else
-                                variables.put(left.getName(), array);
-                            return array;
-                        }
+        // Returns the splitter for the current value of FS
+        public FieldSplitter getFieldSplitter() {
+            return splitter;
+        }
 
-                        throw new Exception("Array of invalid type");
-                    }
+        // Limits splitting to the first fields of each line, for programs that are
+        // known never to look past them (see FieldUsageAnalyzer)
+        public void setFieldLimit(int fieldLimit) {
+            this.fieldLimit = fieldLimit;
+        }
 
-                    // If the hash map does not contain the array, then create a new one and put it
-                    // in the hash map.
-                    HashMap<String, InterpreterDataType> init = new HashMap<>();
-                    init.put(getIDT(left.getIndex(), localVars).get(), right);
-                    InterpreterArrayDataType array = new InterpreterArrayDataType(init);
-                    variables.put(left.getName(), array);
-                    return array;
+        // Returns field i of the current record, $0 being the whole record. A field
+        // is cut out of the record the first time it is read; after that reading it
+        // is a plain array access.
+        public InterpreterDataType getField(int index) {
+            if (index == 0) {
+                if (recordDirty) {
+                    rebuildRecord();
                 }
-
-                // If variable...
-                if (localVars != null && localVars.containsKey(left.getName()))
-                    localVars.put(left.getName(), right);
-                else
-                    variables.put(left.getName(), right);
-                return right;
+                return recordValue;
             }
-
-            // If the node is an operation and has a dollar operator, put the variable in
-            // the hash map. This is for assigning values to fields (e.g. $1 = "hello
-            // world").
-            else if (aNode.getLeft().getClass() == OperationNode.class) {
-
-                OperationNode left = (OperationNode) aNode.getLeft();
-                InterpreterDataType right = getIDT(aNode.getRight(), localVars);
-
-                if (left.getOperation() == OperationNode.Operations.DOLLAR) {
-
-                    variables.put(getIDT(left, localVars).get(), right);
-                    return right;
-                }
-
-                throw new Exception("Assigning to invalid type");
+            splitFields();
+            if (index > fieldCount) {
+                return EMPTY;
             }
-            throw new Exception("Assigning to invalid type");
+            InterpreterDataType field = fields[index];
+            if (field == null) {
+                field = new InterpreterDataType(
+                        record.subSequence(offsets.getStart(index), offsets.getEnd(index)).toString(), true);
+                fields[index] = field;
+            }
+            return field;
         }
 
-        // =============CONSTANT=============
-        else if (node.getClass() == ConstantNode.class) {
-            return new InterpreterDataType(((ConstantNode) node).getValue());
+        // Returns the current record, or null if fields have been assigned since it
+        // was set, as it is only rebuilt from them when $0 is next read
+        public CharSequence getUnchangedRecord() {
+            return recordDirty ? null : record;
         }
 
-        // =============FUNCTION-CALL=============
-        else if (node.getClass() == FunctionCallNode.class) {
-            return new InterpreterDataType(runFunctionCall((FunctionCallNode) node, localVars));
+        // Assigns a value to field i (counting from 1) of the current record. Assigning
+        // past the last field adds empty fields up to it, increasing NF.
+        public void setField(int index, InterpreterDataType value) {
+            splitFields();
+            if (index > fieldCount) {
+                setFieldCount(index);
+            }
+            fields[index] = value;
+            recordDirty = true;
         }
 
-        // =============PATTERN=============
-        else if (node.getClass() == PatternNode.class) {
-            throw new Exception("Can not pass pattern to a function");
+        // Returns the number of fields in the current record
+        public int getFieldCount() {
+            splitFields();
+            return fieldCount;
         }
 
-        // =============TERNARY=============
-        else if (node.getClass() == TernaryNode.class) {
-
-            TernaryNode tNode = (TernaryNode) node;
-            if (getIDT(tNode.getCondition(), localVars).get().equals("1")) {
-                return getIDT(tNode.getTrue(), localVars);
+        // Sets NF, dropping the fields past the new count or adding empty ones
+        public void setFieldCount(int count) {
+            splitFields();
+            ensureCapacity(count);
+            for (int i = fieldCount + 1; i <= count; i++) {
+                fields[i] = EMPTY;
             }
-
-            else {
-                return getIDT(tNode.getFalse(), localVars);
+            for (int i = count + 1; i <= fieldCount; i++) {
+                fields[i] = null;
             }
+            fieldCount = count;
+            recordDirty = true;
         }
 
-        // =============VARIABLE-REFERENCE=============
-        // A variable can be of two different types: an array, or a regular variable.
-        // Returns 0 if the variable is not initialized within the local variables or
-        // global hash map.
-        else if (node.getClass() == VariableReferenceNode.class) {
-
-            VariableReferenceNode vNode = (VariableReferenceNode) node;
-
-            // If array...
-            if (vNode.getIndex() != null) {
-
-                InterpreterDataType temp;
-                if (((temp = localVars.get(vNode.getName())) != null)
-                        || (temp = variables.get(vNode.getName())) != null) {
-
-                    if (temp.getClass() == InterpreterArrayDataType.class) {
-
-                        InterpreterArrayDataType array = (InterpreterArrayDataType) temp;
-                        return array.getArray().get(getIDT(vNode.getIndex(), localVars).get());
-                    }
-
-                    throw new Exception("Array not of proper type");
+        // Joins the fields back together with OFS after any of them has changed. The
+        // fields stay as they are rather than being split out of the new $0 again.
+        private void rebuildRecord() {
+            String separator = globals[VariableResolver.OFS].get(conversion);
+            StringBuilder builder = new StringBuilder();
+            for (int i = 1; i <= fieldCount; i++) {
+                if (i > 1) {
+                    builder.append(separator);
                 }
-                return new InterpreterDataType("0");
+                builder.append(getField(i).get(conversion));
             }
+            String line = builder.toString();
+            record = line;
+            recordValue = new InterpreterDataType(line, true);
+            recordDirty = false;
+        }
 
-            // If variable...
-            else {
-
-                InterpreterDataType variable;
-                if (((variable = localVars.get(vNode.getName())) != null)
-                        || (variable = variables.get(vNode.getName())) != null) {
-                    return variable;
-                }
-                return new InterpreterDataType("0");
+        // Works out the field boundaries of the current record if that hasn't been
+        // done yet, and forgets the field values of the previous record
+        private void splitFields() {
+            if (split) {
+                return;
             }
+            Arrays.fill(fields, 1, fieldCount + 1, null);
+            fieldCount = findFields(record);
+            ensureCapacity(fieldCount);
+            split = true;
         }
 
-        // =============OPERATION=============
-        // Handles all mathematical, comparison, boolean, matching, unary, and "IN"
-        // operators. This will return the result of the operations, for example 1>0
-        // returns 1.
-        else if (node.getClass() == OperationNode.class) {
-            final DecimalFormat decimalFormat = new DecimalFormat("0.#####");
-            OperationNode oNode = (OperationNode) node;
-            InterpreterDataType left = getIDT(oNode.getLeft(), localVars);
-            OperationNode.Operations op = oNode.getOperation();
-            float leftValue;
-            float rightValue;
-
-            // Handles all non-unary operations
-            if (oNode.getRight().isPresent()) {
-
-                // ----------MATCH----------
-                // Utilizes the String match() method to emulate AWK matching. Note: the right
-                // side MUST be a pattern. NOTMATCH uses the same principles.
-                if (op == OperationNode.Operations.MATCH) {
-
-                    if (oNode.getRight().get().getClass() == PatternNode.class) {
-
-                        PatternNode pattern = (PatternNode) oNode.getRight().get();
-                        if (left.get().matches(pattern.getPattern())) {
-                            return new InterpreterDataType("1");
-                        }
-                        return new InterpreterDataType("0");
-                    }
-                    throw new Exception("Invalid type on match");
-                }
-
-                // ----------NOTMATCH----------
-                else if (op == OperationNode.Operations.NOTMATCH) {
-
-                    if (oNode.getRight().get().getClass() == PatternNode.class) {
-
-                        PatternNode pattern = (PatternNode) oNode.getRight().get();
-                        if (left.get().matches(pattern.getPattern())) {
-                            return new InterpreterDataType("0");
-                        }
-
-                        return new InterpreterDataType("1");
-                    }
-                    throw new Exception("Invalid type on match");
-                }
-
-                InterpreterDataType right = getIDT(oNode.getRight().get(), localVars);
-
-                // ----------ADD----------
-                // Tries to parse each left and right for floats, and sets them to 0 if it is
-                // unable to parse, and then returns the result of the operation. The following
-                // utilize the same principles: SUBTRACT, MULTIPLY, DIVIDE, MODULO, EXPONENT.
-                if (op == OperationNode.Operations.ADD) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                    } catch (NumberFormatException e) {
-                        leftValue = 0;
-                    }
-
-                    try {
-                        rightValue = Float.parseFloat(right.get());
-                    } catch (NumberFormatException e) {
-                        rightValue = 0;
-                    }
-
-                    float value = leftValue + rightValue;
-                    return new InterpreterDataType(decimalFormat.format(value));
-                }
-
-                // ----------SUBTRACT----------
-                else if (op == OperationNode.Operations.SUBTRACT) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                    } catch (NumberFormatException e) {
-                        leftValue = 0;
-                    }
-
-                    try {
-                        rightValue = Float.parseFloat(right.get());
-                    } catch (NumberFormatException e) {
-                        rightValue = 0;
-                    }
-
-                    float value = leftValue - rightValue;
-                    return new InterpreterDataType(decimalFormat.format(value));
-                }
-
-                // ----------MULTIPLY----------
-                else if (op == OperationNode.Operations.MULTIPLY) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                    } catch (NumberFormatException e) {
-                        leftValue = 0;
-                    }
-
-                    try {
-                        rightValue = Float.parseFloat(right.get());
-                    } catch (NumberFormatException e) {
-                        rightValue = 0;
-                    }
-
-                    float value = leftValue * rightValue;
-                    return new InterpreterDataType(decimalFormat.format(value));
-                }
-
-                // ----------DIVIDE----------
-                else if (op == OperationNode.Operations.DIVIDE) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                    } catch (NumberFormatException e) {
-                        leftValue = 0;
-                    }
-
-                    try {
-                        rightValue = Float.parseFloat(right.get());
-                    } catch (NumberFormatException e) {
-                        rightValue = 0;
-                    }
-
-                    float value = leftValue / rightValue;
-                    return new InterpreterDataType(decimalFormat.format(value));
-                }
-
-                // ----------MODULO----------
-                else if (op == OperationNode.Operations.MODULO) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                    } catch (NumberFormatException e) {
-                        leftValue = 0;
-                    }
-
-                    try {
-                        rightValue = Float.parseFloat(right.get());
-                    } catch (NumberFormatException e) {
-                        rightValue = 0;
-                    }
-
-                    float value = leftValue % rightValue;
-                    return new InterpreterDataType(decimalFormat.format(value));
-                }
-
-                // ----------EXPONENT----------
-                else if (op == OperationNode.Operations.EXPONENT) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                    } catch (NumberFormatException e) {
-                        leftValue = 0;
-                    }
-
-                    try {
-                        rightValue = Float.parseFloat(right.get());
-                    } catch (NumberFormatException e) {
-                        rightValue = 0;
-                    }
-
-                    double value = Math.pow(leftValue, rightValue);
-                    return new InterpreterDataType(decimalFormat.format(value));
-                }
-
-                // ----------EQUALS----------
-                // Tries to parse both left and right and compare them as floats - if it is
-                // unable to, compares them as strings. The following utilize the same
-                // principles: NOTEQUALS, LESSTHAN, LESSEQUAL, GREATERTHAN, GREATEREQUAL.
-                else if (op == OperationNode.Operations.EQ) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                        rightValue = Float.parseFloat(right.get());
-                        if (leftValue == rightValue) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    } catch (NumberFormatException e) {
-                        if (left.get().equals(right.get())) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    }
-                }
-
-                // ----------NOT-EQUALS----------
-                else if (op == OperationNode.Operations.NE) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                        rightValue = Float.parseFloat(right.get());
-                        if (leftValue == rightValue) {
-                            return new InterpreterDataType("0");
-                        } else {
-                            return new InterpreterDataType("1");
-                        }
-                    } catch (NumberFormatException e) {
-                        if (left.get().equals(right.get())) {
-                            return new InterpreterDataType("0");
-                        } else {
-                            return new InterpreterDataType("1");
-                        }
-                    }
-                }
-
-                // ----------LESS-THAN----------
-                else if (op == OperationNode.Operations.LT) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                        rightValue = Float.parseFloat(right.get());
-                        if (leftValue < rightValue) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    } catch (NumberFormatException e) {
-                        if (left.get().compareTo(right.get()) < 0) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    }
-                }
-
-                // ----------LESS-THAN-OR-EQUAL----------
-                else if (op == OperationNode.Operations.LE) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                        rightValue = Float.parseFloat(right.get());
-                        if (leftValue <= rightValue) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    } catch (NumberFormatException e) {
-                        if (left.get().compareTo(right.get()) <= 0) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    }
-                }
-
-                // ----------GREATER-THAN----------
-                else if (op == OperationNode.Operations.GT) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                        rightValue = Float.parseFloat(right.get());
-                        if (leftValue > rightValue) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    } catch (NumberFormatException e) {
-                        if (left.get().compareTo(right.get()) > 0) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    }
-                }
-
-                // ----------GREATER-THAN-OR-EQUAL----------
-                else if (op == OperationNode.Operations.GE) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                        rightValue = Float.parseFloat(right.get());
-                        if (leftValue >= rightValue) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    } catch (NumberFormatException e) {
-                        if (left.get().compareTo(right.get()) >= 0) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    }
-                }
-
-                // ----------AND----------
-                // Tries to parse the left and right to perform a boolean operation on, by
-                // default a string is false and any number other than 0 is true.
-                // OR uses the same principle.
-                else if (op == OperationNode.Operations.AND) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                        rightValue = Float.parseFloat(right.get());
-                        if (leftValue != 0 && rightValue != 0) {
-                            return new InterpreterDataType("1");
-                        } else {
-                            return new InterpreterDataType("0");
-                        }
-                    } catch (NumberFormatException e) {
-                        return new InterpreterDataType("0");
-                    }
-                }
-
-                // ----------OR----------
-                else if (op == OperationNode.Operations.OR) {
-                    boolean l, r;
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                        if (leftValue != 0) {
-                            l = true;
-                        } else
-                            l = false;
-                    } catch (NumberFormatException e) {
-                        l = false;
-                    }
+        // Makes room in the field array for the given number of fields
+        private void ensureCapacity(int count) {
+            if (count >= fields.length) {
+                fields = Arrays.copyOf(fields, count * 2);
+            }
+        }
 
-                    try {
-                        rightValue = Float.parseFloat(right.get());
-                        if (rightValue != 0) {
-                            r = true;
-                        } else
-                            r = false;
-                    } catch (NumberFormatException e) {
-                        r = false;
-                    }
+        // Finds the boundaries of the fields in text, storing them in offsets, and
+        // returns the number of fields. Scanning stops as soon as the field limit is
+        // reached, leaving the rest of the line untouched.
+        private int findFields(CharSequence text) {
+            return recordSplitter.split(text, offsets, fieldLimit);
+        }
 
-                    if (l || r) {
-                        return new InterpreterDataType("1");
-                    }
-                    return new InterpreterDataType("0");
-                }
+        // Stands in for $0 in the globals, only turning the record into a
+        // String once its value is read
+        private class RecordDataType extends InterpreterDataType {
 
-                // ----------CONCATENTATION----------
-                else if (op == OperationNode.Operations.CONCATENATION) {
-                    return new InterpreterDataType(left.get() + right.get());
-                }
+            private CharSequence line;
 
-                // ----------IN----------
-                else if (op == OperationNode.Operations.IN) {
-                    if (localVars.containsKey(right.get()) || variables.containsKey(right.get())) {
-                        if (right.getClass() == InterpreterArrayDataType.class) {
-                            InterpreterArrayDataType rightArray = (InterpreterArrayDataType) right;
-                            if (rightArray.getArray().get(left.get()) != null) {
-                                return new InterpreterDataType("1");
-                            }
-                            return new InterpreterDataType("0");
-                        }
-                        throw new Exception("Array is not of correct type");
-                    }
-                    throw new Exception("Array is not a initialized");
-                }
+            public RecordDataType(CharSequence line) {
+                super("", true);
+                this.line = line;
             }
 
-            // ----------NOT----------
-            else if (op == OperationNode.Operations.NOT) {
-                boolean l;
-                try {
-                    leftValue = Float.parseFloat(left.get());
-                    if (leftValue != 0) {
-                        l = true;
-                    } else
-                        l = false;
-                } catch (NumberFormatException e) {
-                    l = false;
-                }
-
-                if (l) {
-                    return new InterpreterDataType("0");
-                }
-                return new InterpreterDataType("1");
+            public String get() {
+                return line.toString();
             }
 
-            // ----------DOLLAR----------
-            else if (op == OperationNode.Operations.DOLLAR) {
-                String field = "$" + left.get();
-                InterpreterDataType retVal;
-                if ((retVal = variables.get(field)) != null) {
-                    return retVal;
-                }
-                return new InterpreterDataType("");
+            public String toString() {
+                return get();
             }
+        }
 
-            else if (oNode.getLeft().getClass() == VariableReferenceNode.class) {
-                VariableReferenceNode leftVar = (VariableReferenceNode) oNode.getLeft();
-                // ----------PRE-INCREMENT----------
-                if (op == OperationNode.Operations.PREINC) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                    } catch (NumberFormatException e) {
-                        leftValue = 0;
-                    }
-                    variables.put(leftVar.getName(), new InterpreterDataType(decimalFormat.format(leftValue + 1)));
-                    return new InterpreterDataType(decimalFormat.format(leftValue + 1));
-                }
+        // Stands in for NF in the globals, splitting the record the first time
+        // its value is read and following any later changes to the field count
+        private class FieldCountDataType extends InterpreterDataType {
 
-                // ----------POST-INCREMENT----------
-                else if (op == OperationNode.Operations.POSTINC) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                    } catch (NumberFormatException e) {
-                        leftValue = 0;
-                    }
-                    variables.put(leftVar.getName(), new InterpreterDataType(decimalFormat.format(leftValue + 1)));
-                    return new InterpreterDataType(decimalFormat.format(leftValue + 1));
-                }
+            private CharSequence line;
+            private long owner;
+            private int number;
+            private String count;
 
-                // ----------POST-DECREMENT----------
-                else if (op == OperationNode.Operations.POSTDEC) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                    } catch (NumberFormatException e) {
-                        leftValue = 0;
-                    }
-                    variables.put(leftVar.getName(), new InterpreterDataType(decimalFormat.format(leftValue - 1)));
-                    return new InterpreterDataType(decimalFormat.format(leftValue - 1));
-                }
+            public FieldCountDataType(CharSequence line) {
+                this.line = line;
+                owner = generation;
+            }
 
-                // ----------PRE-DECREMENT----------
-                else if (op == OperationNode.Operations.PREDEC) {
-                    try {
-                        leftValue = Float.parseFloat(left.get());
-                    } catch (NumberFormatException e) {
-                        leftValue = 0;
+            public String get() {
+                if (owner == generation) {
+                    int current = getFieldCount();
+                    if (count == null || current != number) {
+                        number = current;
+                        count = current + "";
                     }
-                    variables.put(leftVar.getName(), new InterpreterDataType(decimalFormat.format(leftValue - 1)));
-                    return new InterpreterDataType(decimalFormat.format(leftValue - 1));
+                } else if (count == null) {
+                    // Only happens when NF was copied into another variable and read
+                    // after the record it belongs to has gone
+                    count = recordSplitter.split(line, new FieldOffsets(), fieldLimit) + "";
                 }
+                return count;
             }
 
-            // ----------POSITIVE----------
-            else if (op == OperationNode.Operations.UNARYPOS) {
-                try {
-                    leftValue = Float.parseFloat(left.get());
-                } catch (NumberFormatException e) {
-                    leftValue = 0;
+            public double getNumber() {
+                if (owner == generation) {
+                    return getFieldCount();
                 }
-                return new InterpreterDataType(leftValue + "");
+                return super.getNumber();
             }
 
-            // ----------NEGATIVE----------
-            else if (op == OperationNode.Operations.UNARYNEG) {
-                try {
-                    leftValue = Float.parseFloat(left.get());
-                } catch (NumberFormatException e) {
-                    leftValue = 0;
-                }
-                return new InterpreterDataType(-leftValue + "");
+            public boolean isNumeric() {
+                return true;
+            }
+
+            public String toString() {
+                return get();
             }
         }
 
-        return null;
     }
 
-    public ReturnType processStatement(Node statement, HashMap<String, InterpreterDataType> localVars)
-            throws Exception {
-
-        // =============BREAK=============
-        if (statement.getClass() == BreakNode.class) {
-            return new ReturnType(ReturnType.Type.BREAK);
+    // The "main" method of the interpreter, this runs the BEGIN blocks, then the
+    // main blocks once for each line of input, then the END blocks. A next goes
+    // straight on to the following line, skipping the blocks left for this one.
+    // nextfile skips the rest of the input file, which, as there is only one, is
+    // the rest of the input. exit stops reading input at once, wherever it is
+    // done, and goes on to the END blocks; an exit in them ends the program.
+    public void interpretProgram() throws Exception {
+        ReturnType type = runWithoutRecord(beginBlocks);
+        while (type != ReturnType.EXIT && handler.splitAssign()) {
+            type = runBlocks(blocks, prefilter);
+            if (type == ReturnType.NEXTFILE) {
+                handler.close();
+            }
         }
+        handler.close();
+        runWithoutRecord(endBlocks);
+    }
 
-        // =============CONTINUE=============
-        else if (statement.getClass() == ContinueNode.class) {
-            return new ReturnType(ReturnType.Type.CONTINUE);
+    // Runs the BEGIN or END blocks, where there is no record for a next or
+    // nextfile to leave
+    private ReturnType runWithoutRecord(ExecNode[] blocks) throws Exception {
+        ReturnType type = runBlocks(blocks, null);
+        if (type == ReturnType.NEXT || type == ReturnType.NEXTFILE) {
+            throw new Exception(type.toString().toLowerCase() + " used in BEGIN or END");
         }
+        return type;
+    }
 
-        // =============DELETE=============
-        // Works according to AWK functionality, deleting the index specified, or the
-        // entire array if no index is given.
-        else if (statement.getClass() == DeleteNode.class) {
-            DeleteNode dNode = (DeleteNode) statement;
-            if (dNode.getArray().getClass() != VariableReferenceNode.class) {
-                throw new Exception("Syntax error: invalid type on delete");
-            }
-            VariableReferenceNode vNode = (VariableReferenceNode) dNode.getArray();
-            InterpreterArrayDataType array;
-            InterpreterDataType temp;
-
-            // Checks if the array is present in the local or global variables map.
-            temp = localVars.get(vNode.getName());
-            if (temp.getClass() != InterpreterArrayDataType.class) {
-                temp = variables.get(vNode.getName());
+    // Runs blocks in order until one of them does a next, nextfile or exit, which
+    // is returned; otherwise returns NONE. Blocks the prefilter, if there is one,
+    // rules out for the current record are passed over.
+    private ReturnType runBlocks(ExecNode[] blocks, BlockPrefilter filter) throws Exception {
+        for (int i = 0; i < blocks.length; i++) {
+            if (filter != null && !filter.mayRun(i, handler.getUnchangedRecord())) {
+                continue;
             }
-            if (temp.getClass() != InterpreterArrayDataType.class) {
-                throw new Exception("Array not found");
+            ReturnType type;
+            try {
+                type = blocks[i].run();
+            } catch (Jump jump) {
+                type = jump.getType();
             }
-
-            // Deletes the index at the array if an index is passed,
-            // else delete the entire array.
-            array = (InterpreterArrayDataType) temp;
-            if (vNode.getIndex() != null) {
-                array.delete(getIDT(vNode.getIndex(), localVars).get());
-            } else {
-                array.delete();
+            if (type.leavesFunction()) {
+                return type;
             }
-            return new ReturnType(ReturnType.Type.NONE);
         }
+        return ReturnType.NONE;
+    }
 
-        // =============DO=WHILE=============
-        // Emulates the functionality of AWK by simply interpreting the list of
-        // statements inside of a do-while loop; checks that the condition is
-        // true using getIDT() to evaluate its truth.
-        else if (statement.getClass() == DoWhileNode.class) {
-            DoWhileNode dwNode = (DoWhileNode) statement;
-            do {
-                ReturnType type = interpStatementList(dwNode.getBlock().getStatements(), localVars);
-
-                // Checks if the return type is break/return inside the statements
-                if (type.getType() == ReturnType.Type.BREAK) {
-                    break;
-                } else if (type.getType() == ReturnType.Type.RETURN) {
-                    return type;
-                }
+    // Carries a next, nextfile or exit done inside a function out of the
+    // expression that called it. There is one for each, made up front and without
+    // a stack trace, so throwing one costs no more than a return.
+    static class Jump extends Exception {
 
-            } while (getIDT(dwNode.getCondition(), localVars).get().equals("1"));
-            return new ReturnType(ReturnType.Type.NONE);
-        }
+        private static final long serialVersionUID = 1L;
 
-        // =============FOR=============
-        // Similar to do-while except we use this method (processStatement()) in order
-        // to initialize the variable and increment the for loop.
-        else if (statement.getClass() == ForNode.class) {
-            ForNode fNode = (ForNode) statement;
-            if (fNode.getInit() != null) {
-                processStatement(fNode.getInit(), localVars);
-            }
-            while (getIDT(fNode.getCondition(), localVars).get().equals("1")) {
-                ReturnType type = interpStatementList(fNode.getBlock().getStatements(), localVars);
-                if (type.getType() == ReturnType.Type.BREAK) {
-                    break;
-                } else if (type.getType() == ReturnType.Type.RETURN) {
-                    return type;
-                }
-                processStatement(fNode.getInc(), localVars);
-            }
+        private static final Jump NEXT = new Jump(ReturnType.NEXT);
+        private static final Jump NEXTFILE = new Jump(ReturnType.NEXTFILE);
+        private static final Jump EXIT = new Jump(ReturnType.EXIT);
+
+        private ReturnType type;
+
+        private Jump(ReturnType type) {
+            super(type.toString(), null, false, false);
+            this.type = type;
         }
 
-        // =============FOR=IN=============
-        // Resolves the operation inside the for-in statement in this order:
-        // for-in -> operation -> variable reference -> array -> hashmap. It
-        // loops over all entries in the hashmap and emulates the functionality
-        // of a for-in loop by setting the left side variable to the key in the
-        // hashmap.
-        else if (statement.getClass() == ForInNode.class) {
-
-            ForInNode fNode = (ForInNode) statement;
-            if (fNode.getCondition().getClass() == OperationNode.class) {
-
-                OperationNode oNode = (OperationNode) fNode.getCondition();
-                if (oNode.getOperation() == OperationNode.Operations.IN) {
-
-                    if (oNode.getLeft().getClass() == VariableReferenceNode.class) {
-
-                        VariableReferenceNode left = (VariableReferenceNode) oNode.getLeft();
-                        if (oNode.getRight().isPresent()) {
-
-                            if (oNode.getRight().get().getClass() == VariableReferenceNode.class) {
-
-                                VariableReferenceNode arrayRef = (VariableReferenceNode) oNode.getRight().get();
-                                if (variables.get(arrayRef.getName()).getClass() == InterpreterArrayDataType.class) {
-
-                                    // Ensures that the array is contained within the local/global variables,
-                                    // and then loops through said array.
-                                    InterpreterDataType temp = localVars.get(arrayRef.getName());
-                                    if (temp == null) {
-                                        temp = variables.get(arrayRef.getName());
-                                    } else {
-                                        throw new Exception("Array not found");
-                                    }
-                                    if (temp.getClass() != InterpreterArrayDataType.class) {
-                                        throw new Exception("Not an array");
-                                    }
-                                    InterpreterArrayDataType array = (InterpreterArrayDataType) temp;
-                                    for (Map.Entry<String, InterpreterDataType> entry : array.getArray().entrySet()) {
-
-                                        localVars.put(left.getName(), entry.getValue());
-                                        ReturnType type = interpStatementList(fNode.getBlock().getStatements(),
-                                                localVars);
-                                        if (type.getType() == ReturnType.Type.BREAK) {
-                                            break;
-                                        } else if (type.getType() == ReturnType.Type.RETURN) {
-                                            return type;
-                                        }
-
-                                    }
-                                    return new ReturnType(ReturnType.Type.NONE);
-                                }
-                                throw new Exception("Variable in for-in is not an array");
-                            }
-                            throw new Exception("Array in for-in is not a variable");
-                        }
-                        throw new Exception("No right side present on IN statement");
-                    }
-                    throw new Exception("Key is not a valid variable in for-in");
-                }
-                throw new Exception("Invalid operation type inside of for");
+        static Jump of(ReturnType type) {
+            if (type == ReturnType.NEXT) {
+                return NEXT;
             }
-            throw new Exception("Invalid type inside of for");
+            return type == ReturnType.NEXTFILE ? NEXTFILE : EXIT;
         }
 
-        // =============IF=============
-        // Walks through the linked list of if nodes, checking if the condition
-        // is true, if it is, then run said block and return.
-        else if (statement.getClass() == IfNode.class) {
-
-            IfNode ifNode = (IfNode) statement;
-            while (ifNode != null) {
+        ReturnType getType() {
+            return type;
+        }
+    }
 
-                if (getIDT(ifNode.getCondition(), localVars).get().equals("1")) {
+    // Returns the value of a plain variable, or the shared uninitialized value if it
+    // has never been assigned
+    InterpreterDataType load(VariableReferenceNode variable) {
+        InterpreterDataType value = variable.isLocal() ? stack[framePointer + variable.getSlot()]
+                : globals[variable.getSlot()];
+        return value == null ? UNINITIALIZED : value;
+    }
 
-                    ReturnType type = interpStatementList(ifNode.getBlock().getStatements(), localVars);
-                    if (!type.getType().equals(ReturnType.Type.NONE)) {
-                        return type;
-                    }
-                    break;
-                }
-                // When it's an else block...
-                else if (ifNode.getNext() != null && ifNode.getNext().getClass() == BlockNode.class) {
-                    BlockNode block = (BlockNode) ifNode.getNext();
-                    ReturnType type = interpStatementList(block.getStatements(), localVars);
-                    if (!type.getType().equals(ReturnType.Type.NONE)) {
-                        return type;
-                    }
-                    break;
-                }
-                ifNode = (IfNode) ifNode.getNext();
-            }
-            return new ReturnType(ReturnType.Type.NONE);
+    // Assigns a value to a plain variable
+    void assign(VariableReferenceNode variable, InterpreterDataType value) throws Exception {
+        if (variable.isLocal()) {
+            stack[framePointer + variable.getSlot()] = value;
+        } else {
+            assignGlobal(variable.getSlot(), value);
         }
+    }
 
-        // =============RETURN=============
-        else if (statement.getClass() == ReturnNode.class) {
-            ReturnNode rNode = (ReturnNode) statement;
-            if (rNode.getValue() != null) {
-                return new ReturnType(ReturnType.Type.RETURN, getIDT(rNode.getValue(), localVars).get());
-            }
+    // Assigns a value to a global. Globals that the interpreter depends on take
+    // effect here: NF changes the field count, and FS, CONVFMT and OFMT have their
+    // splitter or converter replaced.
+    void assignGlobal(int slot, InterpreterDataType value) throws Exception {
+        if (slot == VariableResolver.NF) {
+            // NF stays bound to the record; setting it truncates or extends the
+            // fields instead
+            handler.setFieldCount(ExecNode.fieldIndex(value));
+            return;
         }
-
-        // =============WHILE=============
-        // Same functionality as the do-while loop, except with a while loop
-        else if (statement.getClass() == WhileNode.class) {
-            WhileNode wNode = (WhileNode) statement;
-
-            while (getIDT(wNode.getCondition(), localVars).get().equals("1")) {
-                ReturnType type = interpStatementList(wNode.getBlock().getStatements(), localVars);
-                if (type.getType() == ReturnType.Type.BREAK) {
-                    break;
-                } else if (type.getType() == ReturnType.Type.RETURN) {
-                    return type;
-                }
-
+        globals[slot] = value;
+        if (slot == VariableResolver.FS) {
+            handler.setFieldSeparator(value.get(conversion));
+        } else if (slot == VariableResolver.CONVFMT) {
+            String format = value.get(conversion);
+            if (!format.equals(conversion.getFormat())) {
+                conversion = new NumberConverter(format);
+            }
+        } else if (slot == VariableResolver.OFMT) {
+            String format = value.get(conversion);
+            if (!format.equals(outputConverter.getFormat())) {
+                outputConverter = new NumberConverter(format);
             }
         }
+    }
 
-        else if (getIDT(statement, localVars) == null)
-            throw new Exception("Not a valid statement");
-        return new ReturnType(ReturnType.Type.NONE);
+    // Returns the array held by a variable, putting a new empty array in its slot
+    // if the variable has never been assigned
+    InterpreterArrayDataType array(VariableReferenceNode variable) throws Exception {
+        InterpreterDataType[] slots = variable.isLocal() ? stack : globals;
+        int slot = variable.isLocal() ? framePointer + variable.getSlot() : variable.getSlot();
+        InterpreterDataType value = slots[slot];
+        if (value == null || value == UNINITIALIZED) {
+            value = new InterpreterArrayDataType(new HashMap<>());
+            slots[slot] = value;
+        }
+        if (value.getClass() != InterpreterArrayDataType.class) {
+            throw new Exception("Array of invalid type");
+        }
+        return (InterpreterArrayDataType) value;
     }
 
-    // Takes a linked list of statements, representing a block, and processes
-    // each one and checks to ensure we are not returning from the block.
-    public ReturnType interpStatementList(LinkedList<Node> statements, HashMap<String, InterpreterDataType> localVars)
+    // Runs a function defined in the program with a frame pushed on the stack,
+    // holding a slot for the value it returns and one for each of its parameters,
+    // filled in by position. Parameters
+    // left out of the call stay unassigned, which is how AWK programs get local
+    // variables. The frame is reserved before the arguments are evaluated, so calls
+    // made while evaluating them push their frames above it. Returns the value the
+    // function returned.
+    InterpreterDataType callFunction(ValueExecNodes.UserFunction function, ExecNode[] arguments)
             throws Exception {
-        for (Node node : statements) {
-            ReturnType type = processStatement(node, localVars);
-            if (type.getType() != ReturnType.Type.NONE) {
-                return type;
+        int frame = pushFrame(function);
+        int callerFrame = framePointer;
+        try {
+            for (int i = 0; i < arguments.length; i++) {
+                // Evaluated before stack is read, since a call in the argument can
+                // grow the stack into a new array
+                InterpreterDataType value = arguments[i].execute();
+                stack[frame + 1 + i] = value;
             }
+            return runFrame(function, frame, arguments.length);
+        } finally {
+            framePointer = callerFrame;
+            stackTop = frame;
         }
-        return new ReturnType(ReturnType.Type.NONE);
     }
 
-    // Called whenever we encounter a function call in in getIDT(), this method has
-    // two states: when a method is non-variadic or variadic. It then assigns the
-    // parameters in the function definition to the evaluated values from the
-    // function call. It then decides whether to run the function call as a built-in
-    // or a custom function, in which case it calls interpStatementList on ever
-    // element. When it is variadic, we skip this step and simply call the built-in
-    // functionality.
-    private String runFunctionCall(FunctionCallNode function, HashMap<String, InterpreterDataType> localVars)
-            throws Exception {
-        FunctionDefinitionNode funcDef = functions.get(function.getName());
-
-        HashMap<String, InterpreterDataType> parameters = new HashMap<>();
-
-        if (!funcDef.isVariadic()) {
-            int i = 0;
-
-            // Loops through all parameters and evaluates the values to assign to the
-            // variables in the function definition.
-            for (Node parameter : funcDef.getParams()) {
-                if (parameter.getClass() == VariableReferenceNode.class) {
-                    VariableReferenceNode vNode = (VariableReferenceNode) parameter;
-
-                    if (function.getParams().size() <= i) {
-                        break;
-                    }
+    // Reserves a frame for a function at the top of the stack, growing the stack if
+    // it is full, and returns where the frame starts: with its return slot, which
+    // the parameters follow
+    private int pushFrame(ValueExecNodes.UserFunction function) {
+        int frame = stackTop;
+        int size = function.getFrameSize() + 1;
+        if (frame + size > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(stack.length * 2, frame + size));
+        }
+        stackTop += size;
+        return frame;
+    }
 
-                    if (vNode.getName().equals("array")) {
-                        parameters.put(vNode.getName(),
-                                new InterpreterDataType(function.getParams().get(i).toString()));
-                    } else
-                        parameters.put(vNode.getName(), getIDT(function.getParams().get(i), localVars));
-                } else {
-                    throw new Exception("Parameter in function definition not a variable");
-                }
-                i++;
-            }
+    // Clears the return slot of a frame and the slots that no argument was passed
+    // for, and runs the function's body in it. A next, nextfile or exit in the
+    // function doesn't stop at the call; it is thrown on to the record loop.
+    private InterpreterDataType runFrame(ValueExecNodes.UserFunction function, int frame, int arguments)
+            throws Exception {
+        stack[frame] = null;
+        Arrays.fill(stack, frame + 1 + arguments, frame + 1 + function.getFrameSize(), null);
+        framePointer = frame + 1;
+        ReturnType type = function.getBody().run();
+        if (type.leavesFunction()) {
+            throw Jump.of(type);
+        }
+        InterpreterDataType value = stack[frame];
+        return value == null ? EMPTY : value;
+    }
 
-            if (i != function.getParams().size()) {
-                throw new Exception("Invalid number of parameters passed to function: " + function.getName());
-            }
+    // Sets the value the running function returns; null if it returns nothing
+    void setReturnValue(InterpreterDataType value) {
+        stack[framePointer - 1] = value;
+    }
 
-            if (funcDef.getClass() == BuiltInFunctionDefinitionNode.class) {
-                return ((BuiltInFunctionDefinitionNode) funcDef).execute.apply(parameters);
-            } else
-                return interpStatementList(funcDef.getStatements(), parameters).getValue();
-        }
+    // Returns the cache of regular expressions used by gsub, sub, match and split,
+    // for its size to be set or its counters read
+    public RegexCache getRegexCache() {
+        return regexes;
+    }
 
-        else {
-            int index = 0;
-
-            // Same as above, except it stops just before the variadic variable and runs the
-            // loop below on said variable.
-            for (int i = 0; i < funcDef.getParams().size() - 1; i++) {
-                Node parameter = funcDef.getParams().get(i);
-                if (parameter.getClass() == VariableReferenceNode.class) {
-                    parameters.put(((VariableReferenceNode) parameter).getName(),
-                            getIDT(function.getParams().get(i), localVars));
-                } else {
-                    throw new Exception("Parameter in function definition not a variable");
-                }
-                index = i;
-            }
+    // Returns what converts numbers to strings under the current CONVFMT
+    public NumberConverter getConversion() {
+        return conversion;
+    }
 
-            // Assigns the variadic variable values.
-            InterpreterDataType idt;
-            for (int i = index; i < function.getParams().size(); i++) {
-                if ((idt = getIDT(function.getParams().get(i), localVars)) == null) {
-                    idt = new InterpreterDataType("");
-                }
-                parameters.put(i + "", idt);
-            }
+    void setExitStatus(int exitStatus) {
+        this.exitStatus = exitStatus;
+    }
 
-            // Variadic functions are only built-in, therefore we can assume this will work.
-            return ((BuiltInFunctionDefinitionNode) funcDef).execute.apply(parameters);
-        }
+    public int getExitStatus() {
+        return exitStatus;
     }
 
     // Prints out all the parameters passed - this is variadic, so their can be any
     // number
-    public String printImplementation(HashMap<String, InterpreterDataType> params) {
-        for (int i = 0; i < params.size(); i++) {
-            System.out.print(params.get(i + "").get());
+    public InterpreterDataType printImplementation(InterpreterDataType[] arguments) {
+        for (InterpreterDataType argument : arguments) {
+            System.out.print(argument.getOutput(outputConverter));
         }
         System.out.println();
-        return "";
+        return EMPTY;
     }
 
     // Prints out all the parameters passed, with format specifiers - this is
     // variadic, so their can be any number
-    public String printfImplementation(HashMap<String, InterpreterDataType> params) {
-        String text = params.get("0").get();
-        params.remove("0");
-        String temp = params.values().toString();
-        String[] values = (temp.substring(1, temp.length() - 1)).split(", ");
-        System.out.printf(text, (Object[]) values);
+    public InterpreterDataType printfImplementation(InterpreterDataType[] arguments) {
+        String[] values = new String[arguments.length - 1];
+        for (int i = 1; i < arguments.length; i++) {
+            values[i - 1] = arguments[i].get(conversion);
+        }
+        System.out.printf(arguments[0].get(conversion), (Object[]) values);
         System.out.println();
-        return "";
+        return EMPTY;
     }
 
-    public String getlineImplementation(HashMap<String, InterpreterDataType> params) {
-        if (handler.splitAssign())
-            return "1";
-        return "0";
+    public InterpreterDataType getlineImplementation() {
+        return ExecNode.bool(handler.splitAssign());
     }
 
-    // Increments NR to the next line by calling splitAssign()
-    public String nextImplementation(HashMap<String, InterpreterDataType> params) {
-        handler.splitAssign();
-        return "";
-    }
-
-    // "Global" substitution, this will replace all instances of the parameter
-    // "regexp" with "replacement" in target. If target is not specified, then it
-    // simply uses the whole line.
-    public String gsubImplementation(HashMap<String, InterpreterDataType> params) {
-        int count = 0;
-        Pattern regexp = Pattern.compile(params.get("regexp").get());
-        Matcher matcher;
-
-        if (params.containsKey("target"))
-            matcher = regexp.matcher(params.get("target").get());
-        else
-            matcher = regexp.matcher(variables.get("$0").get());
-
-        while (matcher.find())
-            count++;
-
-        variables.put("$0", new InterpreterDataType(matcher.replaceAll(params.get("replacement").get())));
-        return count + "";
+    // "Global" substitution, this will replace all instances of "regexp" with
+    // "replacement" in target, which is the whole line when the call doesn't give
+    // one.
+    public InterpreterDataType gsubImplementation(InterpreterDataType regexp, InterpreterDataType replacement,
+            InterpreterDataType target) {
+        StringBuilder result = new StringBuilder();
+        int count = substitute(regexes.get(regexp.get(conversion)), replacement.get(conversion),
+                target.get(conversion), result, true);
+        handler.setRecord(new InterpreterDataType(result.toString(), true));
+        return new InterpreterDataType(count);
     }
 
     // Finds the first index in "string" that matches the given parameter "regexp"
-    public String matchImplementation(HashMap<String, InterpreterDataType> params) {
-        Pattern regexp = Pattern.compile(params.get("regexp").get());
-        Matcher matcher = regexp.matcher(params.get("string").get());
-        if (matcher.find())
-            return matcher.start() + 1 + "";
-        return "0";
+    public InterpreterDataType matchImplementation(InterpreterDataType string, InterpreterDataType regexp) {
+        int start = regexes.get(regexp.get(conversion)).search(string.get(conversion), 0);
+        return new InterpreterDataType(start + 1);
     }
 
     // Substitutes the first match of "regexp" in the "target" string with
     // "replacement". Uses the whole line if target isn't specified. In contrast
     // with gsub, this only replaces one match.
-    public String subImplementation(HashMap<String, InterpreterDataType> params) {
+    public InterpreterDataType subImplementation(InterpreterDataType regexp, InterpreterDataType replacement,
+            InterpreterDataType target) {
+        StringBuilder result = new StringBuilder();
+        int count = substitute(regexes.get(regexp.get(conversion)), replacement.get(conversion),
+                target.get(conversion), result, false);
+        handler.setRecord(new InterpreterDataType(result.toString(), true));
+        return new InterpreterDataType(count);
+    }
+
+    // Copies text into result with the first match of regex, or every match if
+    // global, replaced, and returns how many were. As in AWK, & in the
+    // replacement stands for the matched text, \& for a literal &, and \\ for a
+    // backslash. An empty match right after the previous match isn't replaced.
+    private int substitute(Regex regex, String replacement, String text, StringBuilder result, boolean global) {
+        boolean plain = replacement.indexOf('&') < 0 && replacement.indexOf('\\') < 0;
+        if (plain && regex.getClass() == Regex.LiteralRegex.class && ((Regex.LiteralRegex) regex).isUnanchored()) {
+            return replaceLiteral(((Regex.LiteralRegex) regex).getLiteral(), replacement, text, result, global);
+        }
         int count = 0;
-        Pattern regexp = Pattern.compile(params.get("regexp").get());
-        Matcher matcher;
+        int copied = 0;
+        int from = 0;
+        int lastEnd = -1;
+        while (from <= text.length()) {
+            int start = regex.search(text, from);
+            if (start < 0) {
+                break;
+            }
+            int end = regex.end();
+            if (start == end && start == lastEnd) {
+                from = start + 1;
+                continue;
+            }
+            result.append(text, copied, start);
+            if (plain) {
+                result.append(replacement);
+            } else {
+                appendReplacement(replacement, text, start, end, result);
+            }
+            copied = end;
+            lastEnd = end;
+            count++;
+            if (!global) {
+                break;
+            }
+            from = end > start ? end : end + 1;
+        }
+        result.append(text, copied, text.length());
+        return count;
+    }
 
-        if (params.containsKey("target"))
-            matcher = regexp.matcher(params.get("target").get());
-        else
-            matcher = regexp.matcher(params.get("$0").get());
+    // Appends the replacement for the match of text from start to end, with &
+    // standing for the match
+    private void appendReplacement(String replacement, String text, int start, int end, StringBuilder result) {
+        for (int i = 0; i < replacement.length(); i++) {
+            char c = replacement.charAt(i);
+            if (c == '\\' && i + 1 < replacement.length()
+                    && (replacement.charAt(i + 1) == '&' || replacement.charAt(i + 1) == '\\')) {
+                result.append(replacement.charAt(++i));
+            } else if (c == '&') {
+                result.append(text, start, end);
+            } else {
+                result.append(c);
+            }
+        }
+    }
 
-        while (matcher.find())
+    // Replaces a plain string with a replacement that has nothing to interpret,
+    // the common case of substitute(), with nothing but String.indexOf()
+    private int replaceLiteral(String literal, String replacement, String text, StringBuilder result,
+            boolean global) {
+        int count = 0;
+        int copied = 0;
+        int start;
+        while ((start = text.indexOf(literal, copied)) >= 0) {
+            result.append(text, copied, start).append(replacement);
+            copied = start + literal.length();
             count++;
-        variables.put("$0", new InterpreterDataType(matcher.replaceFirst(params.get("replacement").get())));
-        return count + "";
+            if (!global) {
+                break;
+            }
+        }
+        result.append(text, copied, text.length());
+        return count;
     }
 
-    // Returns the first index of "find" in the string "in", or returns "0" to
+    // Returns the first index of "find" in the string "in", or returns 0 to
     // indicate it did not find a match.
-    public String indexImplementation(HashMap<String, InterpreterDataType> params) {
-        int i = params.get("in").get().indexOf(params.get("find").get());
+    public InterpreterDataType indexImplementation(InterpreterDataType in, InterpreterDataType find) {
+        int i = in.get(conversion).indexOf(find.get(conversion));
         if (i == -1) {
-            return "0";
+            return new InterpreterDataType(0);
         }
-        return i + "";
+        return new InterpreterDataType(i);
     }
 
     // Returns the length of the given string.
-    public String lengthImplementation(HashMap<String, InterpreterDataType> params) {
-        return params.get("string").get().length() + "";
+    public InterpreterDataType lengthImplementation(InterpreterDataType string) {
+        return new InterpreterDataType(string.get(conversion).length());
     }
 
     // Splits a string into an array using either the optional parameter "fieldsep"
-    // or the default "FS" variable. The result is stored in "array", and the
-    // function returns the length of said array. Also, if given parameter "seps",
-    // the seperators will stored in it.
-    public String splitImplementation(HashMap<String, InterpreterDataType> params) {
-        String[] array;
-        LinkedList<String> seps = new LinkedList<>();
-        String string = params.get("string").get();
-
-        if (params.containsKey("fieldsep")) {
-
-            // if there is a seps parameter, loop through the string and save the seperators
-            // in an array and store it in params
-            if (params.containsKey("seps")) {
-
-                for (int i = 0; i < string.length(); i++) {
-                    if ((string.charAt(i) + "").matches(params.get("fieldsep").get())) {
-                        seps.add(string.charAt(i) + "");
-                    }
-                }
+    // or the current splitter for FS. The array passed in is emptied and filled with
+    // the pieces, and the function returns how many there are. If given "seps", the
+    // text between the pieces is stored in it.
+    public InterpreterDataType splitImplementation(InterpreterDataType string, InterpreterDataType array,
+            InterpreterDataType fieldsep, InterpreterDataType seps) throws Exception {
+        FieldSplitter splitter = fieldsep == null ? handler.getFieldSplitter()
+                : FieldSplitter.forSeparator(fieldsep.get(conversion), regexes);
+        String text = string.get(conversion);
+        int count = splitter.split(text, splitOffsets, Integer.MAX_VALUE);
+
+        InterpreterArrayDataType pieces = arrayArgument(array);
+        pieces.delete();
+        for (int i = 0; i < count; i++) {
+            pieces.add(i + "", new InterpreterDataType(text.substring(splitOffsets.getStart(i + 1),
+                    splitOffsets.getEnd(i + 1)), true));
+        }
 
-                params.put("seps", new InterpreterArrayDataType(seps.toArray(new String[seps.size()])));
+        if (seps != null) {
+            InterpreterArrayDataType separators = arrayArgument(seps);
+            separators.delete();
+            for (int i = 1; i < count; i++) {
+                separators.add(i - 1 + "", new InterpreterDataType(text.substring(splitOffsets.getEnd(i),
+                        splitOffsets.getStart(i + 1))));
             }
-
-            array = string.split(params.get("fieldsep").get());
-            variables.put(params.get("array").get(), new InterpreterArrayDataType(array));
-
         }
+        return new InterpreterDataType(count);
+    }
 
-        // Default case, fieldsep isn't passed
-        else {
-            array = string.split(variables.get("FS").get());
-            variables.put(params.get("array").get(), new InterpreterArrayDataType(array));
-            // params.put("array", new InterpreterArrayDataType(array));
+    // Checks that an argument passed to a built-in as an array really is one
+    private InterpreterArrayDataType arrayArgument(InterpreterDataType value) throws Exception {
+        if (value.getClass() != InterpreterArrayDataType.class) {
+            throw new Exception("Array of invalid type");
         }
-
-        return array.length + "";
+        return (InterpreterArrayDataType) value;
     }
 
     // Returns a substring from "start" to optional parameter "length"; if length
     // isn't passed, then go to the end of the string.
-    public String substrImplementation(HashMap<String, InterpreterDataType> params) {
+    public InterpreterDataType substrImplementation(InterpreterDataType string, InterpreterDataType start,
+            InterpreterDataType length) {
 
-        if (params.containsKey("length")) {
+        if (length != null) {
 
-            return params.get("string").get().substring(Integer.parseInt(params.get("start").get()),
-                    Integer.parseInt(params.get("length").get()));
+            return new InterpreterDataType(string.get(conversion).substring((int) start.getNumber(),
+                    (int) length.getNumber()));
         }
 
-        return params.get("string").get().substring(Integer.parseInt(params.get("start").get()));
+        return new InterpreterDataType(string.get(conversion).substring((int) start.getNumber()));
     }
 
     // Converts all characters in "string" to lower case
-    public String tolowerImplementation(HashMap<String, InterpreterDataType> params) {
-        return params.get("string").get().toLowerCase();
+    public InterpreterDataType tolowerImplementation(InterpreterDataType string) {
+        return new InterpreterDataType(string.get(conversion).toLowerCase());
     }
 
     // Converts all characters in "string" to upper case
-    public String toupperImplementation(HashMap<String, InterpreterDataType> params) {
-        return params.get("string").get().toUpperCase();
+    public InterpreterDataType toupperImplementation(InterpreterDataType string) {
+        return new InterpreterDataType(string.get(conversion).toUpperCase());
     }
 
 }
@@ -1,21 +1,221 @@
+//Represents a value in the interpreter. A value can hold a string, a number, or
+//both: a number only gets formatted into a string once its string is needed, and
+//a string only gets scanned for a number once its number is needed. Either way
+//the result is kept, so no value is ever parsed twice, and a number is only
+//formatted again if CONVFMT has changed since. Values are never changed after
+//being made, which lets variables share them freely.
 public class InterpreterDataType {
 
+    // Set when the value is a number, in which case the string is only its
+    // formatted form
+    private static final int NUMBER = 1;
+
+    // Set once a string has been scanned for its number; STRNUM is set with it if
+    // the string came from the input and the whole of it turned out to be a
+    // number (e.g. "12" or " 3.5 ")
+    private static final int SCANNED = 2;
+    private static final int STRNUM = 4;
+
+    // Set on strings that came from the input: records, fields, and the pieces
+    // split() makes. Only these can be strnums; a string constant or a string
+    // worked out by the program is always a string, even if it looks like a
+    // number.
+    private static final int INPUT = 8;
+
+    // The format for numbers converted to strings outside of a running program,
+    // which is the default CONVFMT
+    private static final NumberConverter DEFAULT_CONVERSION = new NumberConverter("%.6g");
+
     private String value;
+    private double number;
+    private int flags;
+
+    // The converter that made value from a non-integral number; null when value
+    // doesn't depend on CONVFMT
+    private NumberConverter converter;
 
     public InterpreterDataType(String value) {
         this.value = value;
     }
 
+    // Constructor for a string that may be a strnum, if fromInput is true
+    public InterpreterDataType(String value, boolean fromInput) {
+        this.value = value;
+        if (fromInput) {
+            flags = INPUT;
+        }
+    }
+
+    public InterpreterDataType(double number) {
+        this.number = number;
+        flags = NUMBER;
+    }
+
     public InterpreterDataType() {
         value = "";
     }
 
+    // Returns a value for a variable that has never been assigned: a strnum with
+    // the empty string and the number 0, so it prints as nothing and compares
+    // equal to both "" and 0
+    static InterpreterDataType uninitialized() {
+        InterpreterDataType uninitialized = new InterpreterDataType();
+        uninitialized.flags = INPUT | SCANNED | STRNUM;
+        return uninitialized;
+    }
+
+    // Returns the value as a string, converting a number with the default
+    // CONVFMT; a running program converts with its own through get(conversion)
     public String get() {
+        if ((flags & NUMBER) != 0) {
+            return get(DEFAULT_CONVERSION);
+        }
         return value;
     }
 
-    public String toString() {
+    // Returns the value as a string, converting a number with the given converter
+    // (the interpreter's CONVFMT). The string is kept along with the converter
+    // that made it, and only made again when asked for with another one, so
+    // assigning CONVFMT takes effect on numbers already converted. Integral
+    // numbers are written as integers whatever CONVFMT is, so theirs is made once.
+    public String get(NumberConverter conversion) {
+        if ((flags & NUMBER) == 0) {
+            return get();
+        }
+        if (value == null || converter != null && converter != conversion) {
+            value = conversion.convert(number);
+            converter = isIntegral(number) ? null : conversion;
+        }
         return value;
     }
 
+    // Returns the value as it should be printed: numbers are formatted with the
+    // given output converter (OFMT), strings are printed as they are
+    public String getOutput(NumberConverter output) {
+        return get(output);
+    }
+
+    // Returns the value as a number. A string is read up to the end of its leading
+    // number, so "12abc" is 12 and a string with no number at all is 0.
+    public double getNumber() {
+        if ((flags & (NUMBER | SCANNED)) == 0) {
+            scan(get());
+        }
+        return number;
+    }
+
+    // Returns true if the value was made as a number, as opposed to a string
+    public boolean isNumber() {
+        return (flags & NUMBER) != 0;
+    }
+
+    // Returns true if the value is a number, or a string from the input that
+    // consists entirely of a number (a strnum); these are compared numerically
+    // rather than as strings
+    public boolean isNumeric() {
+        if ((flags & NUMBER) != 0) {
+            return true;
+        }
+        if ((flags & INPUT) == 0) {
+            return false;
+        }
+        if ((flags & SCANNED) == 0) {
+            scan(get());
+        }
+        return (flags & STRNUM) != 0;
+    }
+
+    // Scans a string for a leading decimal number, setting number to its value
+    // and marking whether the number takes up the whole string (blanks aside).
+    // Only strings that really are numbers reach Double.parseDouble(), so nothing
+    // is ever thrown.
+    private void scan(String text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length && isBlank(text.charAt(i))) {
+            i++;
+        }
+        int start = i;
+        if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+            i++;
+        }
+
+        // Integer part, also accumulated directly for the common case of a plain
+        // integer that fits in a long
+        int digitsStart = i;
+        long integer = 0;
+        while (i < length && isDigit(text.charAt(i))) {
+            integer = integer * 10 + (text.charAt(i) - '0');
+            i++;
+        }
+        int integerDigits = i - digitsStart;
+        boolean simple = true;
+
+        int fractionDigits = 0;
+        if (i < length && text.charAt(i) == '.') {
+            int dot = i++;
+            while (i < length && isDigit(text.charAt(i))) {
+                i++;
+            }
+            fractionDigits = i - dot - 1;
+            if (fractionDigits == 0 && integerDigits == 0) {
+                i = dot;
+            }
+            simple = false;
+        }
+
+        double result = 0;
+        boolean found = integerDigits > 0 || fractionDigits > 0;
+        if (found) {
+            // Exponent, only taken if at least one digit follows it
+            if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+                int e = i + 1;
+                if (e < length && (text.charAt(e) == '+' || text.charAt(e) == '-')) {
+                    e++;
+                }
+                if (e < length && isDigit(text.charAt(e))) {
+                    while (e < length && isDigit(text.charAt(e))) {
+                        e++;
+                    }
+                    i = e;
+                    simple = false;
+                }
+            }
+
+            if (simple && integerDigits <= 18) {
+                result = text.charAt(start) == '-' ? -integer : integer;
+            } else {
+                result = Double.parseDouble(text.substring(start, i));
+            }
+        }
+
+        int end = i;
+        while (end < length && isBlank(text.charAt(end))) {
+            end++;
+        }
+
+        number = result;
+        flags |= SCANNED;
+        if (found && end == length && (flags & INPUT) != 0) {
+            flags |= STRNUM;
+        }
+    }
+
+    private static boolean isIntegral(double number) {
+        long integer = (long) number;
+        return integer == number && integer != Long.MAX_VALUE && integer != Long.MIN_VALUE;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    public String toString() {
+        return get();
+    }
+
 }
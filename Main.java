@@ -8,18 +8,50 @@ public class Main {
     public static void main(String args[]) throws Exception {
         String code = "";
         String text = "";
+        Interpreter.InputMode mode = Interpreter.InputMode.STREAM;
+        Interpreter.ExecutionMode execution = Interpreter.ExecutionMode.TREE;
+        int regexCacheSize = RegexCache.DEFAULT_CAPACITY;
+        boolean regexStats = false;
+        int arg = 0;
+
+        // Options come before the program and input arguments; --mmap memory maps
+        // the input file instead of streaming it through a reader, and --compile
+        // compiles the program to JVM bytecode before running it. --regex-cache=N
+        // sets how many regular expressions built at runtime are kept compiled,
+        // and --regex-stats prints how well that worked once the program is done.
+        while (arg < args.length && args[arg].startsWith("--")) {
+            if (args[arg].equals("--mmap")) {
+                mode = Interpreter.InputMode.MAPPED;
+            } else if (args[arg].equals("--compile")) {
+                execution = Interpreter.ExecutionMode.COMPILED;
+            } else if (args[arg].startsWith("--regex-cache=")) {
+                regexCacheSize = Integer.parseInt(args[arg].substring("--regex-cache=".length()));
+            } else if (args[arg].equals("--regex-stats")) {
+                regexStats = true;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[arg]);
+            }
+            arg++;
+        }
+
         // This condition allows for simple input of a String without
         // the need for a file, intended for debugging
-        if (args[0].equals("debug")) {
-            code = args[1];
-            text = args[2];
+        if (args[arg].equals("debug")) {
+            code = args[arg + 1];
+            text = args[arg + 2];
         } else {
-            code = new String(Files.readAllBytes(Paths.get(args[0])));
-            text = Paths.get(args[1]).toString();
+            code = new String(Files.readAllBytes(Paths.get(args[arg])));
+            text = Paths.get(args[arg + 1]).toString();
         }
         Lexer lexer = new Lexer(code);
         Parser parser = new Parser(lexer.lex());
-        Interpreter interpreter = new Interpreter(parser.parse(), text);
+        Interpreter interpreter = new Interpreter(new AstOptimizer().optimize(parser.parse()), text, mode, execution);
+        interpreter.getRegexCache().setCapacity(regexCacheSize);
         interpreter.interpretProgram();
+        System.out.flush();
+        if (regexStats) {
+            System.err.println(interpreter.getRegexCache());
+        }
+        System.exit(interpreter.getExitStatus());
     }
 }
@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//Reads records straight out of a memory mapped file. Record separators are found
+//by scanning the mapped bytes, and each record is handed out as a MappedRecord,
+//which only decodes its bytes into a String when the text is actually needed.
+//Files larger than one mapping window are mapped piece by piece, always starting
+//the next window at the beginning of the record that crossed the boundary.
+public class MappedRecordReader implements RecordReader {
+
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private FileChannel channel;
+    private long fileSize;
+
+    // The currently mapped window, and its offset within the file
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int limit;
+    private int position;
+
+    // True when the last terminator was a \r, meaning a directly following \n
+    // belongs to the same terminator and must be skipped
+    private boolean skipLineFeed;
+
+    public MappedRecordReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileSize = channel.size();
+        map(0);
+    }
+
+    // Maps the window beginning at the given offset in the file; positions are
+    // relative to the window, so callers shift their own indexes accordingly
+    private void map(long start) throws IOException {
+        windowStart = start;
+        limit = (int) Math.min(WINDOW_SIZE, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, limit);
+    }
+
+    public CharSequence nextRecord() throws IOException {
+        if (skipLineFeed) {
+            skipLineFeed = false;
+            if (position >= limit && windowStart + limit < fileSize) {
+                map(windowStart + position);
+                position = 0;
+            }
+            if (position < limit && window.get(position) == '\n') {
+                position++;
+            }
+        }
+        if (windowStart + position >= fileSize) {
+            return null;
+        }
+
+        // Scans for the next terminator, remembering whether any byte had its high
+        // bit set so the record knows if it can take the ASCII path when decoding
+        int start = position;
+        int highBits = 0;
+        while (true) {
+            while (position < limit) {
+                byte b = window.get(position);
+                if (b == '\n' || b == '\r') {
+                    MappedRecord record = new MappedRecord(window, start, position - start, highBits >= 0);
+                    skipLineFeed = b == '\r';
+                    position++;
+                    return record;
+                }
+                highBits |= b;
+                position++;
+            }
+
+            // The last record of the file may have no terminator
+            if (windowStart + limit >= fileSize) {
+                return new MappedRecord(window, start, position - start, highBits >= 0);
+            }
+            if (start == 0) {
+                throw new IOException("Record longer than " + WINDOW_SIZE + " bytes in mapped input");
+            }
+
+            // The record runs past the end of this window, so map the next window from
+            // the beginning of the record and keep scanning
+            map(windowStart + start);
+            position -= start;
+            start = 0;
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // A single record living in a mapped window. Pure ASCII records read their
+    // characters directly from the mapped bytes and decode to a String with a plain
+    // byte copy; anything else is decoded as UTF-8 the first time it is needed.
+    public static class MappedRecord implements CharSequence {
+
+        private MappedByteBuffer window;
+        private int offset;
+        private int length;
+        private boolean ascii;
+        private String text;
+
+        public MappedRecord(MappedByteBuffer window, int offset, int length, boolean ascii) {
+            this.window = window;
+            this.offset = offset;
+            this.length = length;
+            this.ascii = ascii;
+        }
+
+        public boolean isAscii() {
+            return ascii;
+        }
+
+        public int length() {
+            if (ascii) {
+                return length;
+            }
+            return toString().length();
+        }
+
+        public char charAt(int index) {
+            if (ascii) {
+                if (index < 0 || index >= length) {
+                    throw new IndexOutOfBoundsException("Index " + index + " out of record of length " + length);
+                }
+                return (char) window.get(offset + index);
+            }
+            return toString().charAt(index);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            if (ascii) {
+                if (start < 0 || end > length || start > end) {
+                    throw new IndexOutOfBoundsException("Range " + start + "-" + end + " out of record");
+                }
+                return decode(offset + start, end - start);
+            }
+            return toString().subSequence(start, end);
+        }
+
+        public String toString() {
+            if (text == null) {
+                text = decode(offset, length);
+            }
+            return text;
+        }
+
+        // Copies the given range out of the mapped window; ASCII bytes map one to
+        // one onto Latin-1, which lets the String keep the copied bytes as they are
+        private String decode(int from, int count) {
+            byte[] bytes = new byte[count];
+            window.get(from, bytes, 0, count);
+            if (ascii) {
+                return new String(bytes, StandardCharsets.ISO_8859_1);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
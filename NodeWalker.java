@@ -0,0 +1,94 @@
+//Walks every node of an AST in program order, handing each one to visit() before
+//descending into its children. Used as the base of the passes that analyze a
+//parsed program before it is interpreted.
+public abstract class NodeWalker {
+
+    // Called once for every node reached by the walk
+    protected abstract void visit(Node node);
+
+    // Walks all the blocks and functions of a program
+    public void walk(ProgramNode program) {
+        for (BlockNode block : program.beginBlocks) {
+            walk(block);
+        }
+        for (BlockNode block : program.blocks) {
+            walk(block);
+        }
+        for (BlockNode block : program.endBlocks) {
+            walk(block);
+        }
+        for (FunctionDefinitionNode function : program.funcDefNodes) {
+            walk(function);
+        }
+    }
+
+    // Visits the node and then walks each of its children; null is accepted so
+    // optional parts of a node can be passed in directly
+    public void walk(Node node) {
+        if (node == null) {
+            return;
+        }
+        visit(node);
+
+        if (node.getClass() == BlockNode.class) {
+            BlockNode block = (BlockNode) node;
+            walk(block.getCondition());
+            for (Node statement : block.getStatements()) {
+                walk(statement);
+            }
+        } else if (node.getClass() == FunctionDefinitionNode.class) {
+            FunctionDefinitionNode function = (FunctionDefinitionNode) node;
+            for (Node parameter : function.getParams()) {
+                walk(parameter);
+            }
+            for (Node statement : function.getStatements()) {
+                walk(statement);
+            }
+        } else if (node.getClass() == AssignmentNode.class) {
+            walk(((AssignmentNode) node).getLeft());
+            walk(((AssignmentNode) node).getRight());
+        } else if (node.getClass() == OperationNode.class) {
+            OperationNode operation = (OperationNode) node;
+            walk(operation.getLeft());
+            if (operation.getRight().isPresent()) {
+                walk(operation.getRight().get());
+            }
+        } else if (node.getClass() == VariableReferenceNode.class) {
+            walk(((VariableReferenceNode) node).getIndex());
+        } else if (node.getClass() == FunctionCallNode.class) {
+            for (Node parameter : ((FunctionCallNode) node).getParams()) {
+                walk(parameter);
+            }
+        } else if (node.getClass() == TernaryNode.class) {
+            TernaryNode ternary = (TernaryNode) node;
+            walk(ternary.getCondition());
+            walk(ternary.getTrue());
+            walk(ternary.getFalse());
+        } else if (node.getClass() == IfNode.class) {
+            IfNode ifNode = (IfNode) node;
+            walk(ifNode.getCondition());
+            walk(ifNode.getBlock());
+            walk(ifNode.getNext());
+        } else if (node.getClass() == ForNode.class) {
+            ForNode forNode = (ForNode) node;
+            walk(forNode.getInit());
+            walk(forNode.getCondition());
+            walk(forNode.getInc());
+            walk(forNode.getBlock());
+        } else if (node.getClass() == ForInNode.class) {
+            walk(((ForInNode) node).getCondition());
+            walk(((ForInNode) node).getBlock());
+        } else if (node.getClass() == WhileNode.class) {
+            walk(((WhileNode) node).getCondition());
+            walk(((WhileNode) node).getBlock());
+        } else if (node.getClass() == DoWhileNode.class) {
+            walk(((DoWhileNode) node).getBlock());
+            walk(((DoWhileNode) node).getCondition());
+        } else if (node.getClass() == DeleteNode.class) {
+            walk(((DeleteNode) node).getArray());
+        } else if (node.getClass() == ReturnNode.class) {
+            walk(((ReturnNode) node).getValue());
+        }
+    }
+
+}
@@ -0,0 +1,405 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+//Converts numbers to strings for one printf-style format, such as the value of
+//OFMT or CONVFMT. The format is parsed once when the converter is made, and each
+//conversion writes its characters into a buffer owned by the converter, so the
+//only String made is the result. Integral values are always written as integers,
+//as AWK does. Digits for %g, %e, and %f come from a single scaled multiplication
+//in the common case, falling back to exact BigDecimal arithmetic only when the
+//result lands too close to a rounding tie to be trusted.
+public class NumberConverter {
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+    private static final long[] LONG_POWERS_OF_TEN = new long[19];
+
+    static {
+        double power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+        long longPower = 1;
+        for (int i = 0; i < LONG_POWERS_OF_TEN.length; i++) {
+            LONG_POWERS_OF_TEN[i] = longPower;
+            longPower *= 10;
+        }
+    }
+
+    private String format;
+
+    // The parsed format; conversion is 0 when the format is something this class
+    // doesn't handle itself, in which case String.format() is used
+    private String prefix;
+    private String suffix;
+    private char conversion;
+    private boolean upper;
+    private boolean leftAlign;
+    private boolean plus;
+    private boolean space;
+    private boolean zeroPad;
+    private int width;
+    private int precision;
+
+    private char[] buffer;
+    private int length;
+
+    // Set by digits() to the decimal exponent of the first digit it produced
+    private int exponent;
+
+    public NumberConverter(String format) {
+        this.format = format;
+        buffer = new char[32];
+        parse(format);
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    // Parses a format holding exactly one %[flags][width][.precision]conversion,
+    // with optional literal text around it
+    private void parse(String format) {
+        int percent = format.indexOf('%');
+        if (percent < 0) {
+            return;
+        }
+        int i = percent + 1;
+        while (i < format.length() && "-+ 0".indexOf(format.charAt(i)) >= 0) {
+            char flag = format.charAt(i++);
+            leftAlign |= flag == '-';
+            plus |= flag == '+';
+            space |= flag == ' ';
+            zeroPad |= flag == '0';
+        }
+        while (i < format.length() && Character.isDigit(format.charAt(i))) {
+            width = width * 10 + (format.charAt(i++) - '0');
+        }
+        precision = 6;
+        if (i < format.length() && format.charAt(i) == '.') {
+            precision = 0;
+            i++;
+            while (i < format.length() && Character.isDigit(format.charAt(i))) {
+                precision = precision * 10 + (format.charAt(i++) - '0');
+            }
+        }
+        if (i >= format.length() || "gGeEfFdi".indexOf(format.charAt(i)) < 0
+                || format.indexOf('%', i + 1) >= 0) {
+            return;
+        }
+        char c = format.charAt(i);
+        upper = Character.isUpperCase(c);
+        conversion = c == 'i' ? 'd' : Character.toLowerCase(c);
+        prefix = format.substring(0, percent);
+        suffix = format.substring(i + 1);
+    }
+
+    // Converts a number to a string with this converter's format
+    public String convert(double number) {
+        long integer = (long) number;
+        if (integer == number && integer != Long.MAX_VALUE && integer != Long.MIN_VALUE) {
+            length = 0;
+            writeLong(integer < 0 ? -integer : integer, 1, integer < 0);
+            return new String(buffer, 0, length);
+        }
+        if (Double.isNaN(number)) {
+            return "nan";
+        }
+        if (Double.isInfinite(number)) {
+            return number > 0 ? "inf" : "-inf";
+        }
+        if (conversion == 0) {
+            return String.format(Locale.ROOT, format, number);
+        }
+
+        length = 0;
+        append(prefix);
+        int start = length;
+        // %d truncates, and a number that truncates to 0 has no sign
+        boolean negative = conversion == 'd' ? number <= -1 : number < 0 || (number == 0 && 1 / number < 0);
+        if (negative) {
+            append('-');
+        } else if (plus) {
+            append('+');
+        } else if (space) {
+            append(' ');
+        }
+        int signEnd = length;
+        double abs = Math.abs(number);
+
+        if (conversion == 'g') {
+            writeGeneral(abs);
+        } else if (conversion == 'e') {
+            writeScientific(abs, precision + 1, false);
+        } else if (conversion == 'f') {
+            writeFixed(abs);
+        } else {
+            writeLong((long) abs, 1, false);
+        }
+        pad(start, signEnd);
+        append(suffix);
+        return new String(buffer, 0, length);
+    }
+
+    // Writes a number the way C's %g does: scientific notation for very small or
+    // large exponents, fixed notation otherwise, and no trailing zeros in either
+    // case. Precisions of 17 and above are enough to identify any double, so those
+    // get the shortest digits that read back as the same number.
+    private void writeGeneral(double abs) {
+        int significant = precision == 0 ? 1 : precision;
+        int count = significant;
+        long digits;
+        if (significant >= 17) {
+            digits = shortest(abs);
+            count = digitCount(digits);
+        } else {
+            digits = digits(abs, count);
+        }
+        if (exponent < -4 || exponent >= significant) {
+            writeScientific(digits, count, true);
+            return;
+        }
+
+        // Fixed notation, using the same significant digits
+        int mark = length;
+        if (exponent < 0) {
+            append('0');
+            append('.');
+            for (int i = -1; i > exponent; i--) {
+                append('0');
+            }
+            writeLong(digits, count, false);
+        } else {
+            writeLong(digits, count, false);
+            int pointAt = mark + exponent + 1;
+            if (pointAt < length) {
+                ensure(1);
+                System.arraycopy(buffer, pointAt, buffer, pointAt + 1, length - pointAt);
+                buffer[pointAt] = '.';
+                length++;
+            } else {
+                for (int i = length; i < pointAt; i++) {
+                    append('0');
+                }
+            }
+        }
+        stripZeros(mark);
+    }
+
+    // Writes count significant digits of a number in scientific notation. More
+    // than 18 digits don't fit in a long, so those come straight from BigDecimal.
+    private void writeScientific(double abs, int count, boolean strip) {
+        if (count <= 18) {
+            writeScientific(digits(abs, count), count, strip);
+            return;
+        }
+        BigDecimal rounded = new BigDecimal(abs).round(new MathContext(count, RoundingMode.HALF_EVEN));
+        String digits = rounded.unscaledValue().toString();
+        exponent = abs == 0 ? 0 : digits.length() - rounded.scale() - 1;
+        int mark = length;
+        append(digits);
+        for (int i = digits.length(); i < count; i++) {
+            append('0');
+        }
+        writeExponent(mark, count, strip);
+    }
+
+    // Writes already generated digits in scientific notation; the exponent comes
+    // from the last call to digits() or shortest()
+    private void writeScientific(long digits, int count, boolean strip) {
+        int mark = length;
+        writeLong(digits, count, false);
+        writeExponent(mark, count, strip);
+    }
+
+    // Puts the decimal point after the first of the count digits written since
+    // mark, and writes the exponent after them
+    private void writeExponent(int mark, int count, boolean strip) {
+        if (count > 1) {
+            ensure(1);
+            System.arraycopy(buffer, mark + 1, buffer, mark + 2, length - mark - 1);
+            buffer[mark + 1] = '.';
+            length++;
+        }
+        if (strip) {
+            stripZeros(mark);
+        }
+        append(upper ? 'E' : 'e');
+        append(exponent < 0 ? '-' : '+');
+        writeLong(Math.abs(exponent), 2, false);
+    }
+
+    // Writes a number with a fixed number of digits after the decimal point
+    private void writeFixed(double abs) {
+        if (precision <= 15) {
+            double scaled = abs * POWERS_OF_TEN[precision];
+            if (scaled < 1e15 && !nearTie(scaled)) {
+                long value = (long) Math.floor(scaled) + (scaled - Math.floor(scaled) > 0.5 ? 1 : 0);
+                long unit = LONG_POWERS_OF_TEN[precision];
+                writeLong(value / unit, 1, false);
+                if (precision > 0) {
+                    append('.');
+                    writeLong(value % unit, precision, false);
+                }
+                return;
+            }
+        }
+        append(new BigDecimal(abs).setScale(precision, RoundingMode.HALF_EVEN).toPlainString());
+    }
+
+    // Returns count significant digits of a positive number, correctly rounded,
+    // as a long with exactly count digits, and sets exponent to the power of ten of
+    // the first digit
+    private long digits(double abs, int count) {
+        if (abs == 0) {
+            exponent = 0;
+            return 0;
+        }
+        int e = (int) Math.floor(Math.log10(abs));
+        int scale = count - 1 - e;
+        if (count <= 15 && Math.abs(scale) < POWERS_OF_TEN.length) {
+            double scaled = scale >= 0 ? abs * POWERS_OF_TEN[scale] : abs / POWERS_OF_TEN[-scale];
+            if (!nearTie(scaled)) {
+                long value = (long) Math.floor(scaled) + (scaled - Math.floor(scaled) > 0.5 ? 1 : 0);
+                if (value >= LONG_POWERS_OF_TEN[count - 1] && value < LONG_POWERS_OF_TEN[count]) {
+                    exponent = e;
+                    return value;
+                }
+                if (value == LONG_POWERS_OF_TEN[count]) {
+                    exponent = e + 1;
+                    return value / 10;
+                }
+            }
+        }
+        return exactDigits(abs, count);
+    }
+
+    // Exact version of digits() for the cases the scaled multiplication can't settle
+    private long exactDigits(double abs, int count) {
+        BigDecimal rounded = new BigDecimal(abs).round(new MathContext(count, RoundingMode.HALF_EVEN));
+        BigInteger unscaled = rounded.unscaledValue();
+        int digitCount = rounded.precision();
+        exponent = digitCount - rounded.scale() - 1;
+        long value = unscaled.longValue();
+        for (int i = digitCount; i < count; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    // Returns the fewest significant digits that convert back to exactly the same
+    // double, setting exponent like digits() does
+    public long shortest(double abs) {
+        for (int count = 1; count < 17; count++) {
+            long value = digits(abs, count);
+            if (toDouble(value, exponent - count + 1) == abs) {
+                return value;
+            }
+        }
+        return digits(abs, 17);
+    }
+
+    // Rebuilds a double from digits times a power of ten; exact inputs to a single
+    // multiplication or division round correctly, anything else goes through
+    // BigDecimal
+    private static double toDouble(long digits, int power) {
+        if (digits < (1L << 53) && Math.abs(power) < POWERS_OF_TEN.length) {
+            return power >= 0 ? digits * POWERS_OF_TEN[power] : digits / POWERS_OF_TEN[-power];
+        }
+        return new BigDecimal(BigInteger.valueOf(digits), -power).doubleValue();
+    }
+
+    // Returns true if a scaled value is so close to halfway between two integers
+    // that the error from scaling could have moved it to the other side
+    private static boolean nearTie(double scaled) {
+        double fraction = scaled - Math.floor(scaled);
+        return Math.abs(fraction - 0.5) <= 2 * Math.ulp(scaled);
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (count < LONG_POWERS_OF_TEN.length && value >= LONG_POWERS_OF_TEN[count]) {
+            count++;
+        }
+        return count;
+    }
+
+    // Writes a non-negative long with at least minDigits digits, zero padded
+    private void writeLong(long value, int minDigits, boolean negative) {
+        if (negative) {
+            append('-');
+        }
+        int count = Math.max(digitCount(value), minDigits);
+        ensure(count);
+        for (int i = length + count - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += count;
+    }
+
+    // Removes trailing zeros after a decimal point written since mark, and the
+    // point if nothing is left after it
+    private void stripZeros(int mark) {
+        int point = -1;
+        for (int i = mark; i < length; i++) {
+            if (buffer[i] == '.') {
+                point = i;
+            }
+        }
+        if (point < 0) {
+            return;
+        }
+        while (length > point + 1 && buffer[length - 1] == '0') {
+            length--;
+        }
+        if (length == point + 1) {
+            length--;
+        }
+    }
+
+    // Pads the conversion written since start out to the field width
+    private void pad(int start, int signEnd) {
+        int missing = width - (length - start);
+        if (missing <= 0) {
+            return;
+        }
+        ensure(missing);
+        if (leftAlign) {
+            for (int i = 0; i < missing; i++) {
+                buffer[length++] = ' ';
+            }
+            return;
+        }
+        int from = zeroPad ? signEnd : start;
+        System.arraycopy(buffer, from, buffer, from + missing, length - from);
+        for (int i = from; i < from + missing; i++) {
+            buffer[i] = zeroPad ? '0' : ' ';
+        }
+        length += missing;
+    }
+
+    private void append(char c) {
+        ensure(1);
+        buffer[length++] = c;
+    }
+
+    private void append(String text) {
+        ensure(text.length());
+        text.getChars(0, text.length(), buffer, length);
+        length += text.length();
+    }
+
+    // Grows the buffer so that count more characters fit
+    private void ensure(int count) {
+        if (length + count > buffer.length) {
+            char[] grown = new char[Math.max(buffer.length * 2, length + count)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+
+}
@@ -0,0 +1,463 @@
+//The executable nodes for the operators of OperationNode, one class per operator,
+//so that evaluating an operator never has to work out which one it is. Operands
+//are evaluated left to right; && and || only evaluate their right side when it
+//decides the result.
+public final class OperatorExecNodes {
+
+    private OperatorExecNodes() {
+    }
+
+    // Base of the operators with a left and a right operand
+    public abstract static class Binary extends ExecNode {
+
+        protected ExecNode left;
+        protected ExecNode right;
+
+        public Binary(ExecNode left, ExecNode right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    // Base of the operators with a single operand
+    public abstract static class Unary extends ExecNode {
+
+        protected ExecNode operand;
+
+        public Unary(ExecNode operand) {
+            this.operand = operand;
+        }
+    }
+
+    // ----------ARITHMETIC----------
+    // Works on the numeric values of both sides, which a value only ever works out
+    // once, and returns the result as a number; it is only formatted if it is used
+    // as a string later. Non-numeric strings count as 0. The work is done in
+    // executeNumber(), so nested arithmetic passes doubles along and only the
+    // outermost operator makes a value.
+
+    public abstract static class Arithmetic extends Binary {
+
+        public Arithmetic(ExecNode left, ExecNode right) {
+            super(left, right);
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return new InterpreterDataType(executeNumber());
+        }
+
+        public boolean producesNumber() {
+            return true;
+        }
+    }
+
+    public static class Add extends Arithmetic {
+
+        public Add(ExecNode left, ExecNode right) {
+            super(left, right);
+        }
+
+        public double executeNumber() throws Exception {
+            return left.executeNumber() + right.executeNumber();
+        }
+    }
+
+    public static class Subtract extends Arithmetic {
+
+        public Subtract(ExecNode left, ExecNode right) {
+            super(left, right);
+        }
+
+        public double executeNumber() throws Exception {
+            return left.executeNumber() - right.executeNumber();
+        }
+    }
+
+    public static class Multiply extends Arithmetic {
+
+        public Multiply(ExecNode left, ExecNode right) {
+            super(left, right);
+        }
+
+        public double executeNumber() throws Exception {
+            return left.executeNumber() * right.executeNumber();
+        }
+    }
+
+    public static class Divide extends Arithmetic {
+
+        public Divide(ExecNode left, ExecNode right) {
+            super(left, right);
+        }
+
+        public double executeNumber() throws Exception {
+            double dividend = left.executeNumber();
+            double divisor = right.executeNumber();
+            if (divisor == 0) {
+                throw new Exception("Division by zero");
+            }
+            return dividend / divisor;
+        }
+    }
+
+    public static class Modulo extends Arithmetic {
+
+        public Modulo(ExecNode left, ExecNode right) {
+            super(left, right);
+        }
+
+        public double executeNumber() throws Exception {
+            double dividend = left.executeNumber();
+            double divisor = right.executeNumber();
+            if (divisor == 0) {
+                throw new Exception("Division by zero");
+            }
+            return dividend % divisor;
+        }
+    }
+
+    public static class Exponent extends Arithmetic {
+
+        public Exponent(ExecNode left, ExecNode right) {
+            super(left, right);
+        }
+
+        public double executeNumber() throws Exception {
+            return Math.pow(left.executeNumber(), right.executeNumber());
+        }
+    }
+
+    public static class Negate extends Unary {
+
+        public Negate(ExecNode operand) {
+            super(operand);
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return new InterpreterDataType(executeNumber());
+        }
+
+        public double executeNumber() throws Exception {
+            return -operand.executeNumber();
+        }
+
+        public boolean producesNumber() {
+            return true;
+        }
+    }
+
+    public static class Plus extends Unary {
+
+        public Plus(ExecNode operand) {
+            super(operand);
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return new InterpreterDataType(executeNumber());
+        }
+
+        public double executeNumber() throws Exception {
+            return operand.executeNumber();
+        }
+
+        public boolean producesNumber() {
+            return true;
+        }
+    }
+
+    // ----------COMPARISON----------
+    // Compares left and right as numbers when both of them are numeric, and as
+    // strings otherwise (see ExecNode.compare()). A comparison whose sides can
+    // only produce numbers, like i + 1 < n * 2, is NUMBERS when it is built, and
+    // compares doubles without making any values at all. Any other comparison
+    // specializes itself on the values it sees: if the first ones are both
+    // numeric (numbers or strnums, as fields usually are), it becomes NUMERIC,
+    // guarding each later evaluation with isNumeric() and comparing the doubles
+    // directly, and taking a side that can only produce a number, as in $1 > n + 1,
+    // as a double without making a value for it. Once a guard fails, or if the
+    // first values weren't both numeric, it is GENERIC for good and goes through
+    // compare().
+    public abstract static class Comparison extends Binary {
+
+        private static final int UNINITIALIZED = 0;
+        private static final int NUMBERS = 1;
+        private static final int NUMERIC = 2;
+        private static final int GENERIC = 3;
+
+        private Interpreter interpreter;
+        private boolean leftProducesNumber;
+        private boolean rightProducesNumber;
+        private int state;
+
+        public Comparison(Interpreter interpreter, ExecNode left, ExecNode right) {
+            super(left, right);
+            this.interpreter = interpreter;
+            leftProducesNumber = left.producesNumber();
+            rightProducesNumber = right.producesNumber();
+            state = leftProducesNumber && rightProducesNumber ? NUMBERS : UNINITIALIZED;
+        }
+
+        // Returns true if the result of comparing left with right (negative, zero,
+        // or positive, like compareTo()) satisfies the operator
+        protected abstract boolean holds(int comparison);
+
+        public InterpreterDataType execute() throws Exception {
+            return bool(executeCondition());
+        }
+
+        public boolean executeCondition() throws Exception {
+            if (state == NUMBERS) {
+                double leftValue = left.executeNumber();
+                return holds(compareNumbers(leftValue, right.executeNumber()));
+            }
+            if (state == NUMERIC) {
+                return executeNumeric();
+            }
+            InterpreterDataType leftValue = left.execute();
+            InterpreterDataType rightValue = right.execute();
+            if (state == UNINITIALIZED) {
+                state = leftValue.isNumeric() && rightValue.isNumeric() ? NUMERIC : GENERIC;
+            }
+            return holds(compare(leftValue, rightValue, interpreter.getConversion()));
+        }
+
+        // Compares the sides as doubles while both are still numeric, turning the
+        // comparison GENERIC when one of them isn't
+        private boolean executeNumeric() throws Exception {
+            InterpreterDataType leftValue = null;
+            double leftNumber;
+            if (leftProducesNumber) {
+                leftNumber = left.executeNumber();
+            } else {
+                leftValue = left.execute();
+                if (!leftValue.isNumeric()) {
+                    state = GENERIC;
+                    return holds(compare(leftValue, right.execute(), interpreter.getConversion()));
+                }
+                leftNumber = leftValue.getNumber();
+            }
+            if (rightProducesNumber) {
+                return holds(compareNumbers(leftNumber, right.executeNumber()));
+            }
+            InterpreterDataType rightValue = right.execute();
+            if (!rightValue.isNumeric()) {
+                state = GENERIC;
+                if (leftValue == null) {
+                    leftValue = new InterpreterDataType(leftNumber);
+                }
+                return holds(compare(leftValue, rightValue, interpreter.getConversion()));
+            }
+            return holds(compareNumbers(leftNumber, rightValue.getNumber()));
+        }
+    }
+
+    public static class Equal extends Comparison {
+
+        public Equal(Interpreter interpreter, ExecNode left, ExecNode right) {
+            super(interpreter, left, right);
+        }
+
+        protected boolean holds(int comparison) {
+            return comparison == 0;
+        }
+    }
+
+    public static class NotEqual extends Comparison {
+
+        public NotEqual(Interpreter interpreter, ExecNode left, ExecNode right) {
+            super(interpreter, left, right);
+        }
+
+        protected boolean holds(int comparison) {
+            return comparison != 0;
+        }
+    }
+
+    public static class Less extends Comparison {
+
+        public Less(Interpreter interpreter, ExecNode left, ExecNode right) {
+            super(interpreter, left, right);
+        }
+
+        protected boolean holds(int comparison) {
+            return comparison < 0;
+        }
+    }
+
+    public static class LessOrEqual extends Comparison {
+
+        public LessOrEqual(Interpreter interpreter, ExecNode left, ExecNode right) {
+            super(interpreter, left, right);
+        }
+
+        protected boolean holds(int comparison) {
+            return comparison <= 0;
+        }
+    }
+
+    public static class Greater extends Comparison {
+
+        public Greater(Interpreter interpreter, ExecNode left, ExecNode right) {
+            super(interpreter, left, right);
+        }
+
+        protected boolean holds(int comparison) {
+            return comparison > 0;
+        }
+    }
+
+    public static class GreaterOrEqual extends Comparison {
+
+        public GreaterOrEqual(Interpreter interpreter, ExecNode left, ExecNode right) {
+            super(interpreter, left, right);
+        }
+
+        protected boolean holds(int comparison) {
+            return comparison >= 0;
+        }
+    }
+
+    // ----------BOOLEAN----------
+    // These work on the conditions of their operands, so a chain of && and || over
+    // comparisons never makes a value until its outermost result is needed
+
+    public static class And extends Binary {
+
+        public And(ExecNode left, ExecNode right) {
+            super(left, right);
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return bool(executeCondition());
+        }
+
+        public boolean executeCondition() throws Exception {
+            return left.executeCondition() && right.executeCondition();
+        }
+    }
+
+    public static class Or extends Binary {
+
+        public Or(ExecNode left, ExecNode right) {
+            super(left, right);
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return bool(executeCondition());
+        }
+
+        public boolean executeCondition() throws Exception {
+            return left.executeCondition() || right.executeCondition();
+        }
+    }
+
+    public static class Not extends Unary {
+
+        public Not(ExecNode operand) {
+            super(operand);
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return bool(executeCondition());
+        }
+
+        public boolean executeCondition() throws Exception {
+            return !operand.executeCondition();
+        }
+    }
+
+    // ----------STRING----------
+    // Joins the strings of both sides; nested concatenations pass strings along
+    // through executeString() and only the outermost one makes a value
+
+    public static class Concatenate extends Binary {
+
+        private Interpreter interpreter;
+
+        public Concatenate(Interpreter interpreter, ExecNode left, ExecNode right) {
+            super(left, right);
+            this.interpreter = interpreter;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return new InterpreterDataType(executeString(interpreter.getConversion()));
+        }
+
+        public String executeString(NumberConverter conversion) throws Exception {
+            String leftValue = left.executeString(conversion);
+            return leftValue.concat(right.executeString(conversion));
+        }
+    }
+
+    // Matches the left side against a pattern, which can match anywhere in the
+    // string; NotMatch is its negation
+    public static class Match extends Unary {
+
+        private Interpreter interpreter;
+        private PatternNode pattern;
+
+        public Match(Interpreter interpreter, ExecNode operand, PatternNode pattern) {
+            super(operand);
+            this.interpreter = interpreter;
+            this.pattern = pattern;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return bool(executeCondition());
+        }
+
+        public boolean executeCondition() throws Exception {
+            return pattern.find(operand.executeString(interpreter.getConversion()));
+        }
+    }
+
+    public static class NotMatch extends Unary {
+
+        private Interpreter interpreter;
+        private PatternNode pattern;
+
+        public NotMatch(Interpreter interpreter, ExecNode operand, PatternNode pattern) {
+            super(operand);
+            this.interpreter = interpreter;
+            this.pattern = pattern;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return bool(executeCondition());
+        }
+
+        public boolean executeCondition() throws Exception {
+            return !pattern.find(operand.executeString(interpreter.getConversion()));
+        }
+    }
+
+    // ----------IN----------
+    // True if the array on the right has an element with the key on the left; a
+    // variable that was never assigned is an empty array
+    public static class In extends Binary {
+
+        private Interpreter interpreter;
+
+        public In(Interpreter interpreter, ExecNode key, ExecNode array) {
+            super(key, array);
+            this.interpreter = interpreter;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return bool(executeCondition());
+        }
+
+        public boolean executeCondition() throws Exception {
+            String key = left.executeString(interpreter.getConversion());
+            InterpreterDataType array = right.execute();
+            if (array == Interpreter.UNINITIALIZED) {
+                return false;
+            }
+            if (array.getClass() != InterpreterArrayDataType.class) {
+                throw new Exception("Array is not of correct type");
+            }
+            return ((InterpreterArrayDataType) array).getArray().get(key) != null;
+        }
+    }
+
+}
@@ -496,7 +496,7 @@ public class Parser {
 
         // if there is a number, return a constant node with its value
         else if ((value = handler.matchAndRemove(TokenType.NUMBER)).isPresent()) {
-            return Optional.of(new ConstantNode(value.get().getValue()));
+            return Optional.of(new ConstantNode(value.get().getValue(), true));
         }
 
         // if there is a pattern, return pattern node with its value
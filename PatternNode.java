@@ -1,17 +1,29 @@
 //Represents a pattern in AWK, denoted with backticks (`) in this parser.
-//Simply holds the value contained inside.
+//Holds the value contained inside, compiled once when the node is made, so
+//matching a string against it compiles nothing.
 public class PatternNode extends Node {
 
     private String pattern;
+    private Regex regex;
 
     public PatternNode(String pattern) {
         this.pattern = pattern;
+        regex = Regex.compile(pattern);
     }
 
     public String getPattern() {
         return pattern;
     }
 
+    public Regex getRegex() {
+        return regex;
+    }
+
+    // Returns true if the pattern matches anywhere in the string, as AWK's ~ does
+    public boolean find(CharSequence string) {
+        return regex.find(string);
+    }
+
     public String toString() {
         return "`" + pattern + "`";
     }
@@ -0,0 +1,14 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+//Represents a source of input records for the interpreter's LineHandler. Records
+//are handed out one at a time, so only the current record has to be kept in memory
+//no matter how large the input is
+public interface RecordReader extends Closeable {
+
+    // Returns the next record without its terminator, or null once the input is
+    // exhausted. Readers may return a lazy CharSequence that only turns into a
+    // String once toString() is called.
+    public CharSequence nextRecord() throws IOException;
+
+}
@@ -0,0 +1,204 @@
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//A compiled regular expression, as used by ~, gsub, sub, match, and field
+//splitting. compile() makes a LiteralRegex for a pattern that is only a string,
+//searched for with String.indexOf(); otherwise it builds a DfaRegex, which
+//matches in time linear in the length of the text whatever the pattern, and
+//falls back on java.util.regex for patterns using anything the DFA doesn't
+//handle (backreferences, lookaround, lazy quantifiers and the like).
+public abstract class Regex {
+
+    private String source;
+
+    protected Regex(String source) {
+        this.source = source;
+    }
+
+    // Compiles a regular expression, as a plain string search if it is one, with
+    // the DFA if it can handle the pattern, and with java.util.regex otherwise;
+    // an invalid pattern throws PatternSyntaxException
+    public static Regex compile(String source) {
+        LiteralRegex literal = LiteralRegex.parse(source);
+        if (literal != null) {
+            return literal;
+        }
+        try {
+            return new DfaRegex(source);
+        } catch (DfaRegex.UnsupportedException e) {
+            return new JavaRegex(source);
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    // Returns true if the regex matches anywhere in the text
+    public abstract boolean find(CharSequence text);
+
+    // Finds the first match in the text that starts at or after from, returning
+    // where it starts, or -1 if there is none; end() then gives where it ends
+    public abstract int search(CharSequence text, int from);
+
+    // Returns the end of the match last found by search()
+    public abstract int end();
+
+    // Returns a string that every match contains, or null if none is known
+    public String getRequiredLiteral() {
+        return null;
+    }
+
+    public String toString() {
+        return source;
+    }
+
+    // ----------LITERAL----------
+    // A regex that is only a string, with escaped characters standing for
+    // themselves, and perhaps ^ before it or $ after it. It matches where the
+    // string is found, so searching is String.indexOf(), or a check at the
+    // start or end of the text when anchored.
+    public static class LiteralRegex extends Regex {
+
+        private String literal;
+        private boolean atStart;
+        private boolean atEnd;
+        private int matchEnd;
+
+        private LiteralRegex(String source, String literal, boolean atStart, boolean atEnd) {
+            super(source);
+            this.literal = literal;
+            this.atStart = atStart;
+            this.atEnd = atEnd;
+        }
+
+        // Returns the regex for a pattern that is a plain string, or null if the
+        // pattern uses anything more than escapes and anchors at its ends
+        public static LiteralRegex parse(String source) {
+            boolean atStart = source.startsWith("^");
+            boolean atEnd = false;
+            StringBuilder literal = new StringBuilder();
+            for (int i = atStart ? 1 : 0; i < source.length(); i++) {
+                char c = source.charAt(i);
+                if (c == '\\') {
+                    if (i + 1 == source.length() || Character.isLetterOrDigit(source.charAt(i + 1))) {
+                        return null;
+                    }
+                    literal.append(source.charAt(++i));
+                } else if (c == '$' && i == source.length() - 1) {
+                    atEnd = true;
+                } else if (FieldSplitter.hasMetacharacters(String.valueOf(c))) {
+                    return null;
+                } else {
+                    literal.append(c);
+                }
+            }
+            return new LiteralRegex(source, literal.toString(), atStart, atEnd);
+        }
+
+        // Returns true if the regex matches the string anywhere, so that
+        // replacing it needs nothing but String.indexOf()
+        public boolean isUnanchored() {
+            return !atStart && !atEnd && !literal.isEmpty();
+        }
+
+        public String getLiteral() {
+            return literal;
+        }
+
+        public String getRequiredLiteral() {
+            return literal.isEmpty() ? null : literal;
+        }
+
+        public boolean find(CharSequence text) {
+            return search(text, 0) >= 0;
+        }
+
+        public int search(CharSequence text, int from) {
+            int start;
+            if (atEnd) {
+                start = text.length() - literal.length();
+                if (start < from || atStart && start != 0 || !matchesAt(text, start)) {
+                    return -1;
+                }
+            } else if (atStart) {
+                if (from > 0 || !matchesAt(text, 0)) {
+                    return -1;
+                }
+                start = 0;
+            } else {
+                start = indexOf(text, from);
+                if (start < 0) {
+                    return -1;
+                }
+            }
+            matchEnd = start + literal.length();
+            return start;
+        }
+
+        public int end() {
+            return matchEnd;
+        }
+
+        // Finds the string in the text from the given index; a record that isn't a
+        // String yet is searched where it is rather than being decoded
+        private int indexOf(CharSequence text, int from) {
+            if (text instanceof String) {
+                return ((String) text).indexOf(literal, from);
+            }
+            if (literal.isEmpty()) {
+                return from <= text.length() ? from : -1;
+            }
+            char first = literal.charAt(0);
+            int last = text.length() - literal.length();
+            for (int i = from; i <= last; i++) {
+                if (text.charAt(i) == first && matchesAt(text, i)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean matchesAt(CharSequence text, int start) {
+            if (text instanceof String) {
+                return ((String) text).startsWith(literal, start);
+            }
+            if (start < 0 || start + literal.length() > text.length()) {
+                return false;
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                if (text.charAt(start + i) != literal.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // ----------JAVA----------
+    // A regex matched by java.util.regex, for the patterns the DFA can't handle.
+    // One matcher is kept and reset onto each text.
+    public static class JavaRegex extends Regex {
+
+        private Matcher matcher;
+
+        public JavaRegex(String source) {
+            super(source);
+            matcher = Pattern.compile(source).matcher("");
+        }
+
+        public boolean find(CharSequence text) {
+            return matcher.reset(text).find();
+        }
+
+        public int search(CharSequence text, int from) {
+            matcher.reset(text);
+            return matcher.find(from) ? matcher.start() : -1;
+        }
+
+        public int end() {
+            return matcher.end();
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Holds the regular expressions compiled from strings while the program runs, such
+//as the first argument of gsub() or a separator given to split(), keyed by their
+//source. Programs tend to use the same few over and over, often straight from a
+//variable that never changes, so each is only compiled the first time it is seen.
+//The cache holds at most capacity patterns, dropping the one used longest ago to
+//make room for a new one; a capacity of 0 turns it off. Hits and misses are
+//counted, so the cache can be sized for a program.
+public class RegexCache {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private int capacity;
+    private LinkedHashMap<String, Regex> patterns;
+    private long hits;
+    private long misses;
+
+    public RegexCache(int capacity) {
+        this.capacity = capacity;
+        // Access order keeps the pattern used longest ago first
+        patterns = new LinkedHashMap<String, Regex>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Regex> eldest) {
+                return size() > RegexCache.this.capacity;
+            }
+        };
+    }
+
+    // Returns the compiled regex for a regular expression, compiling it only if
+    // it isn't in the cache
+    public Regex get(String regex) {
+        Regex pattern = patterns.get(regex);
+        if (pattern != null) {
+            hits++;
+            return pattern;
+        }
+        misses++;
+        pattern = Regex.compile(regex);
+        if (capacity > 0) {
+            patterns.put(regex, pattern);
+        }
+        return pattern;
+    }
+
+    // Changes how many patterns the cache holds, dropping the ones used longest
+    // ago if it now holds too many
+    public void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid regex cache size: " + capacity);
+        }
+        this.capacity = capacity;
+        Iterator<Map.Entry<String, Regex>> iterator = patterns.entrySet().iterator();
+        while (patterns.size() > capacity) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return patterns.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public String toString() {
+        return "regex cache: " + hits + " hits, " + misses + " misses, " + patterns.size() + "/" + capacity
+                + " patterns";
+    }
+
+}
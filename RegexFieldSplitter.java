@@ -0,0 +1,40 @@
+//Splits records on matches of a regular expression. The regex is compiled
+//before the splitter is made, and searched again from the end of each
+//separator found.
+public class RegexFieldSplitter implements FieldSplitter {
+
+    private Regex separator;
+
+    public RegexFieldSplitter(Regex separator) {
+        this.separator = separator;
+    }
+
+    public int split(CharSequence text, FieldOffsets offsets, int limit) {
+        int length = text.length();
+        if (length == 0) {
+            return 0;
+        }
+        int count = 0;
+        int start = 0;
+        int from = 0;
+        while (count < limit && from <= length) {
+            int match = separator.search(text, from);
+            if (match < 0) {
+                break;
+            }
+            // An empty match can't separate anything
+            if (separator.end() == match) {
+                from = match + 1;
+                continue;
+            }
+            count = offsets.add(count, start, match);
+            start = separator.end();
+            from = start;
+        }
+        if (count < limit) {
+            count = offsets.add(count, start, length);
+        }
+        return count;
+    }
+
+}
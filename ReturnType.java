@@ -1,31 +1,46 @@
+//Tells whoever ran a statement where control goes next: on to the following
+//statement, out of or around a loop, out of the function, or, for next,
+//nextfile and exit, out of the program's blocks altogether. There is only one
+//of each, shared by every statement, so running a statement never makes one;
+//the value a function returns is left in its frame instead (see
+//Interpreter.setReturnValue()).
 public class ReturnType {
 
+    public static final ReturnType NONE = new ReturnType(Type.NONE);
+    public static final ReturnType BREAK = new ReturnType(Type.BREAK);
+    public static final ReturnType CONTINUE = new ReturnType(Type.CONTINUE);
+    public static final ReturnType RETURN = new ReturnType(Type.RETURN);
+    public static final ReturnType NEXT = new ReturnType(Type.NEXT);
+    public static final ReturnType NEXTFILE = new ReturnType(Type.NEXTFILE);
+    public static final ReturnType EXIT = new ReturnType(Type.EXIT);
+
     private Type type;
-    private String value;
 
     public enum Type {
-        NONE, BREAK, CONTINUE, RETURN
-    }
-
-    public ReturnType(Type type) {
-        this.type = type;
+        NONE, BREAK, CONTINUE, RETURN, NEXT, NEXTFILE, EXIT
     }
 
-    public ReturnType(Type type, String value) {
+    private ReturnType(Type type) {
         this.type = type;
-        this.value = value;
     }
 
     public Type getType() {
         return type;
     }
 
-    public String toString() {
-        return type.toString() + " " + value;
+    // Returns true if control leaves any loop this comes out of
+    public boolean leavesLoop() {
+        return type != Type.NONE && type != Type.CONTINUE;
+    }
+
+    // Returns true if control leaves the function this comes out of, and keeps
+    // going until it reaches the loop over the input records
+    public boolean leavesFunction() {
+        return type == Type.NEXT || type == Type.NEXTFILE || type == Type.EXIT;
     }
 
-    public String getValue() {
-        return value;
+    public String toString() {
+        return type.toString();
     }
 
 }
@@ -0,0 +1,305 @@
+import java.util.Map;
+
+//The executable nodes for statements: blocks, conditionals, loops, and the
+//statements that change where control goes next. Each one runs through run(),
+//which returns a ReturnType telling the enclosing statement whether to carry on,
+//leave a loop, return from the function, or leave the record altogether.
+public final class StatementExecNodes {
+
+    private StatementExecNodes() {
+    }
+
+    // Base of the nodes that only make sense as statements
+    public abstract static class Statement extends ExecNode {
+
+        public InterpreterDataType execute() throws Exception {
+            throw new Exception("Not a valid expression");
+        }
+
+        public abstract ReturnType run() throws Exception;
+    }
+
+    // A list of statements, run in order until one of them leaves the list
+    public static class Sequence extends Statement {
+
+        private ExecNode[] statements;
+
+        public Sequence(ExecNode[] statements) {
+            this.statements = statements;
+        }
+
+        public ReturnType run() throws Exception {
+            for (ExecNode statement : statements) {
+                ReturnType type = statement.run();
+                if (type != ReturnType.NONE) {
+                    return type;
+                }
+            }
+            return ReturnType.NONE;
+        }
+    }
+
+    // A pattern-action block of the program: the action runs if there is no
+    // pattern or the pattern is true
+    public static class PatternAction extends Statement {
+
+        private ExecNode pattern;
+        private ExecNode action;
+
+        public PatternAction(ExecNode pattern, ExecNode action) {
+            this.pattern = pattern;
+            this.action = action;
+        }
+
+        public ReturnType run() throws Exception {
+            if (pattern == null || pattern.executeCondition()) {
+                return action.run();
+            }
+            return ReturnType.NONE;
+        }
+    }
+
+    // ----------IF----------
+    // An else-if chain is an If whose otherwise is another If; otherwise is null
+    // when there is no else
+    public static class If extends Statement {
+
+        private ExecNode condition;
+        private ExecNode then;
+        private ExecNode otherwise;
+
+        public If(ExecNode condition, ExecNode then, ExecNode otherwise) {
+            this.condition = condition;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        public ReturnType run() throws Exception {
+            if (condition.executeCondition()) {
+                return then.run();
+            }
+            if (otherwise != null) {
+                return otherwise.run();
+            }
+            return ReturnType.NONE;
+        }
+    }
+
+    // ----------LOOPS----------
+    // A break leaves the loop, a continue goes on to the next iteration, and
+    // anything else that leaves the loop is passed up to the enclosing statement
+
+    public static class While extends Statement {
+
+        private ExecNode condition;
+        private ExecNode body;
+
+        public While(ExecNode condition, ExecNode body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        public ReturnType run() throws Exception {
+            while (condition.executeCondition()) {
+                ReturnType type = body.run();
+                if (type == ReturnType.BREAK) {
+                    break;
+                } else if (type.leavesLoop()) {
+                    return type;
+                }
+            }
+            return ReturnType.NONE;
+        }
+    }
+
+    public static class DoWhile extends Statement {
+
+        private ExecNode condition;
+        private ExecNode body;
+
+        public DoWhile(ExecNode condition, ExecNode body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        public ReturnType run() throws Exception {
+            do {
+                ReturnType type = body.run();
+                if (type == ReturnType.BREAK) {
+                    break;
+                } else if (type.leavesLoop()) {
+                    return type;
+                }
+            } while (condition.executeCondition());
+            return ReturnType.NONE;
+        }
+    }
+
+    // A C-style for loop; any of its three parts may be missing, and a missing
+    // condition is always true
+    public static class For extends Statement {
+
+        private ExecNode init;
+        private ExecNode condition;
+        private ExecNode increment;
+        private ExecNode body;
+
+        public For(ExecNode init, ExecNode condition, ExecNode increment, ExecNode body) {
+            this.init = init;
+            this.condition = condition;
+            this.increment = increment;
+            this.body = body;
+        }
+
+        public ReturnType run() throws Exception {
+            if (init != null) {
+                init.run();
+            }
+            while (condition == null || condition.executeCondition()) {
+                ReturnType type = body.run();
+                if (type == ReturnType.BREAK) {
+                    break;
+                } else if (type.leavesLoop()) {
+                    return type;
+                }
+                if (increment != null) {
+                    increment.run();
+                }
+            }
+            return ReturnType.NONE;
+        }
+    }
+
+    // Loops over the entries of an array, binding the loop variable to each one in
+    // turn; an array that was never assigned has no entries
+    public static class ForIn extends Statement {
+
+        private Interpreter interpreter;
+        private VariableReferenceNode variable;
+        private VariableReferenceNode array;
+        private ExecNode body;
+
+        public ForIn(Interpreter interpreter, VariableReferenceNode variable, VariableReferenceNode array,
+                ExecNode body) {
+            this.interpreter = interpreter;
+            this.variable = variable;
+            this.array = array;
+            this.body = body;
+        }
+
+        public ReturnType run() throws Exception {
+            InterpreterDataType values = interpreter.load(array);
+            if (values == Interpreter.UNINITIALIZED) {
+                return ReturnType.NONE;
+            }
+            if (values.getClass() != InterpreterArrayDataType.class) {
+                throw new Exception("Variable in for-in is not an array");
+            }
+            for (Map.Entry<String, InterpreterDataType> entry : ((InterpreterArrayDataType) values).getArray()
+                    .entrySet()) {
+                interpreter.assign(variable, entry.getValue());
+                ReturnType type = body.run();
+                if (type == ReturnType.BREAK) {
+                    break;
+                } else if (type.leavesLoop()) {
+                    return type;
+                }
+            }
+            return ReturnType.NONE;
+        }
+    }
+
+    // ----------JUMPS----------
+
+    public static class Break extends Statement {
+
+        public ReturnType run() {
+            return ReturnType.BREAK;
+        }
+    }
+
+    public static class Continue extends Statement {
+
+        public ReturnType run() {
+            return ReturnType.CONTINUE;
+        }
+    }
+
+    // Returns from a function, with the value of the expression if there is one
+    public static class Return extends Statement {
+
+        private Interpreter interpreter;
+        private ExecNode value;
+
+        public Return(Interpreter interpreter, ExecNode value) {
+            this.interpreter = interpreter;
+            this.value = value;
+        }
+
+        public ReturnType run() throws Exception {
+            interpreter.setReturnValue(value == null ? null : value.execute());
+            return ReturnType.RETURN;
+        }
+    }
+
+    // Abandons the current record, skipping the rest of the blocks for it
+    public static class Next extends Statement {
+
+        public ReturnType run() {
+            return ReturnType.NEXT;
+        }
+    }
+
+    // Abandons the current record and the rest of the input file
+    public static class NextFile extends Statement {
+
+        public ReturnType run() {
+            return ReturnType.NEXTFILE;
+        }
+    }
+
+    // Stops reading input, with the value of the expression as the exit status if
+    // there is one
+    public static class Exit extends Statement {
+
+        private Interpreter interpreter;
+        private ExecNode status;
+
+        public Exit(Interpreter interpreter, ExecNode status) {
+            this.interpreter = interpreter;
+            this.status = status;
+        }
+
+        public ReturnType run() throws Exception {
+            if (status != null) {
+                interpreter.setExitStatus((int) status.executeNumber());
+            }
+            return ReturnType.EXIT;
+        }
+    }
+
+    // ----------DELETE----------
+    // Deletes the element at the index, or every element if there is no index
+    public static class Delete extends Statement {
+
+        private Interpreter interpreter;
+        private VariableReferenceNode array;
+        private ExecNode index;
+
+        public Delete(Interpreter interpreter, VariableReferenceNode array, ExecNode index) {
+            this.interpreter = interpreter;
+            this.array = array;
+            this.index = index;
+        }
+
+        public ReturnType run() throws Exception {
+            if (index != null) {
+                interpreter.array(array).delete(index.execute().get(interpreter.getConversion()));
+            } else {
+                interpreter.array(array).delete();
+            }
+            return ReturnType.NONE;
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.io.Reader;
+
+//Reads records from a character stream through a fixed size buffer, splitting them
+//on the same line terminators as Files.readAllLines() (\n, \r\n, or \r). The
+//buffer is refilled in chunks, so memory use stays constant regardless of the
+//length of the input; only a record spanning two chunks is copied aside.
+public class StreamRecordReader implements RecordReader {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private Reader reader;
+    private char[] buffer;
+    private int position;
+    private int limit;
+
+    // Holds the beginning of a record that continues into the next chunk
+    private StringBuilder carry;
+
+    // True when the last terminator was a \r, meaning a directly following \n
+    // belongs to the same terminator and must be skipped
+    private boolean skipLineFeed;
+
+    public StreamRecordReader(Reader reader) {
+        this.reader = reader;
+        buffer = new char[CHUNK_SIZE];
+        carry = new StringBuilder();
+    }
+
+    public String nextRecord() throws IOException {
+        while (true) {
+            if (position >= limit && !fill()) {
+                // End of input; hand out a final record that had no terminator
+                if (carry.length() == 0) {
+                    return null;
+                }
+                String record = carry.toString();
+                carry.setLength(0);
+                return record;
+            }
+
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+
+            // Scans the buffered chunk for the next terminator
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '\n' || c == '\r') {
+                    String record = takeRecord(start, position);
+                    skipLineFeed = c == '\r';
+                    position++;
+                    return record;
+                }
+                position++;
+            }
+
+            // No terminator in the rest of this chunk, so keep what we have and read on
+            carry.append(buffer, start, limit - start);
+        }
+    }
+
+    // Builds the record ending at index end of the buffer, prefixed by anything
+    // carried over from the previous chunk
+    private String takeRecord(int start, int end) {
+        if (carry.length() == 0) {
+            return new String(buffer, start, end - start);
+        }
+        carry.append(buffer, start, end - start);
+        String record = carry.toString();
+        carry.setLength(0);
+        return record;
+    }
+
+    // Reads the next chunk into the buffer; returns false at the end of the stream
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            position = 0;
+            limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
@@ -0,0 +1,51 @@
+//Splits records on every occurrence of a literal string, for separators longer
+//than one character that contain no regular expression metacharacters
+public class StringFieldSplitter implements FieldSplitter {
+
+    private String separator;
+
+    public StringFieldSplitter(String separator) {
+        this.separator = separator;
+    }
+
+    public int split(CharSequence text, FieldOffsets offsets, int limit) {
+        int length = text.length();
+        if (length == 0) {
+            return 0;
+        }
+        int count = 0;
+        int start = 0;
+        int end;
+        while (count < limit && (end = indexOf(text, start)) >= 0) {
+            count = offsets.add(count, start, end);
+            start = end + separator.length();
+        }
+        if (count < limit) {
+            count = offsets.add(count, start, length);
+        }
+        return count;
+    }
+
+    // Finds the separator in text at or after from, or returns -1
+    private int indexOf(CharSequence text, int from) {
+        if (text instanceof String) {
+            return ((String) text).indexOf(separator, from);
+        }
+        char first = separator.charAt(0);
+        int last = text.length() - separator.length();
+        for (int i = from; i <= last; i++) {
+            if (text.charAt(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < separator.length() && text.charAt(i + j) == separator.charAt(j)) {
+                j++;
+            }
+            if (j == separator.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
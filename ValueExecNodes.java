@@ -0,0 +1,475 @@
+//The executable nodes that produce or store values: constants, variables, array
+//elements, fields, assignments, increments, the ternary operator, and function
+//calls. Which variable a node reads or writes was settled by VariableResolver, so
+//locals, globals, and the built-in variables that need special handling each get
+//their own class.
+public final class ValueExecNodes {
+
+    private ValueExecNodes() {
+    }
+
+    // A constant; its value is made once, when the node is built
+    public static class Constant extends ExecNode {
+
+        private InterpreterDataType value;
+        private double number;
+
+        public Constant(InterpreterDataType value) {
+            this.value = value;
+            number = value.getNumber();
+        }
+
+        public InterpreterDataType getValue() {
+            return value;
+        }
+
+        public InterpreterDataType execute() {
+            return value;
+        }
+
+        public double executeNumber() {
+            return number;
+        }
+
+        public boolean producesNumber() {
+            return value.isNumber();
+        }
+    }
+
+    // ----------VARIABLES----------
+
+    public static class GlobalVariable extends ExecNode {
+
+        private Interpreter interpreter;
+        private int slot;
+
+        public GlobalVariable(Interpreter interpreter, int slot) {
+            this.interpreter = interpreter;
+            this.slot = slot;
+        }
+
+        public InterpreterDataType execute() {
+            InterpreterDataType value = interpreter.globals[slot];
+            return value == null ? Interpreter.UNINITIALIZED : value;
+        }
+    }
+
+    public static class LocalVariable extends ExecNode {
+
+        private Interpreter interpreter;
+        private int slot;
+
+        public LocalVariable(Interpreter interpreter, int slot) {
+            this.interpreter = interpreter;
+            this.slot = slot;
+        }
+
+        public InterpreterDataType execute() {
+            InterpreterDataType value = interpreter.stack[interpreter.framePointer + slot];
+            return value == null ? Interpreter.UNINITIALIZED : value;
+        }
+    }
+
+    // An element of an array; an element that isn't there reads as an empty string
+    public static class ArrayElement extends ExecNode {
+
+        private Interpreter interpreter;
+        private VariableReferenceNode array;
+        private ExecNode index;
+
+        public ArrayElement(Interpreter interpreter, VariableReferenceNode array, ExecNode index) {
+            this.interpreter = interpreter;
+            this.array = array;
+            this.index = index;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            InterpreterDataType element = interpreter.array(array).getArray().get(index.execute().get(interpreter.getConversion()));
+            return element == null ? Interpreter.EMPTY : element;
+        }
+    }
+
+    // A whole array passed to a function that uses it as one; it is made in the
+    // caller's slot if it doesn't exist yet, so the function can fill it
+    public static class ArrayReference extends ExecNode {
+
+        private Interpreter interpreter;
+        private VariableReferenceNode array;
+
+        public ArrayReference(Interpreter interpreter, VariableReferenceNode array) {
+            this.interpreter = interpreter;
+            this.array = array;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return interpreter.array(array);
+        }
+    }
+
+    // ----------FIELDS----------
+
+    public static class Field extends ExecNode {
+
+        private Interpreter interpreter;
+        private ExecNode index;
+
+        public Field(Interpreter interpreter, ExecNode index) {
+            this.interpreter = interpreter;
+            this.index = index;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return interpreter.handler.getField(fieldIndex(index.execute()));
+        }
+    }
+
+    // A field with a constant index, like $1, which is by far the most common case
+    public static class ConstantField extends ExecNode {
+
+        private Interpreter interpreter;
+        private int index;
+
+        public ConstantField(Interpreter interpreter, int index) {
+            this.interpreter = interpreter;
+            this.index = index;
+        }
+
+        public InterpreterDataType execute() {
+            return interpreter.handler.getField(index);
+        }
+    }
+
+    // ----------ASSIGNMENT----------
+    // Every assignment returns the value assigned
+
+    public static class AssignGlobal extends ExecNode {
+
+        private Interpreter interpreter;
+        private int slot;
+        private ExecNode value;
+
+        public AssignGlobal(Interpreter interpreter, int slot, ExecNode value) {
+            this.interpreter = interpreter;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            InterpreterDataType result = value.execute();
+            interpreter.globals[slot] = result;
+            return result;
+        }
+    }
+
+    // Assigns one of the built-in variables whose value the interpreter acts on,
+    // like NF or FS (see Interpreter.assignGlobal())
+    public static class AssignSpecial extends ExecNode {
+
+        private Interpreter interpreter;
+        private int slot;
+        private ExecNode value;
+
+        public AssignSpecial(Interpreter interpreter, int slot, ExecNode value) {
+            this.interpreter = interpreter;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            InterpreterDataType result = value.execute();
+            interpreter.assignGlobal(slot, result);
+            return result;
+        }
+    }
+
+    public static class AssignLocal extends ExecNode {
+
+        private Interpreter interpreter;
+        private int slot;
+        private ExecNode value;
+
+        public AssignLocal(Interpreter interpreter, int slot, ExecNode value) {
+            this.interpreter = interpreter;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            InterpreterDataType result = value.execute();
+            interpreter.stack[interpreter.framePointer + slot] = result;
+            return result;
+        }
+    }
+
+    public static class AssignElement extends ExecNode {
+
+        private Interpreter interpreter;
+        private VariableReferenceNode array;
+        private ExecNode index;
+        private ExecNode value;
+
+        public AssignElement(Interpreter interpreter, VariableReferenceNode array, ExecNode index, ExecNode value) {
+            this.interpreter = interpreter;
+            this.array = array;
+            this.index = index;
+            this.value = value;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            InterpreterDataType result = value.execute();
+            interpreter.array(array).add(index.execute().get(interpreter.getConversion()), result);
+            return result;
+        }
+    }
+
+    // Assigns a field; assigning $0 replaces the whole record
+    public static class AssignField extends ExecNode {
+
+        private Interpreter interpreter;
+        private ExecNode index;
+        private ExecNode value;
+
+        public AssignField(Interpreter interpreter, ExecNode index, ExecNode value) {
+            this.interpreter = interpreter;
+            this.index = index;
+            this.value = value;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            InterpreterDataType result = value.execute();
+            int field = fieldIndex(index.execute());
+            if (field == 0) {
+                interpreter.handler.setRecord(result);
+            } else {
+                interpreter.handler.setField(field, result);
+            }
+            return result;
+        }
+    }
+
+    // ----------INCREMENT/DECREMENT----------
+    // Adds delta (1 or -1) to a variable; the pre- forms return the new value and
+    // the post- forms the value from before
+
+    public static class IncrementVariable extends ExecNode {
+
+        private Interpreter interpreter;
+        private VariableReferenceNode variable;
+        private double delta;
+        private boolean post;
+
+        public IncrementVariable(Interpreter interpreter, VariableReferenceNode variable, double delta,
+                boolean post) {
+            this.interpreter = interpreter;
+            this.variable = variable;
+            this.delta = delta;
+            this.post = post;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            double old = interpreter.load(variable).getNumber();
+            InterpreterDataType result = new InterpreterDataType(old + delta);
+            interpreter.assign(variable, result);
+            return post ? new InterpreterDataType(old) : result;
+        }
+
+        public boolean producesNumber() {
+            return true;
+        }
+    }
+
+    public static class IncrementElement extends ExecNode {
+
+        private Interpreter interpreter;
+        private VariableReferenceNode array;
+        private ExecNode index;
+        private double delta;
+        private boolean post;
+
+        public IncrementElement(Interpreter interpreter, VariableReferenceNode array, ExecNode index, double delta,
+                boolean post) {
+            this.interpreter = interpreter;
+            this.array = array;
+            this.index = index;
+            this.delta = delta;
+            this.post = post;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            InterpreterArrayDataType values = interpreter.array(array);
+            String key = index.execute().get(interpreter.getConversion());
+            InterpreterDataType element = values.getArray().get(key);
+            double old = element == null ? 0 : element.getNumber();
+            InterpreterDataType result = new InterpreterDataType(old + delta);
+            values.add(key, result);
+            return post ? new InterpreterDataType(old) : result;
+        }
+
+        public boolean producesNumber() {
+            return true;
+        }
+    }
+
+    // ----------TERNARY----------
+
+    public static class Ternary extends ExecNode {
+
+        private ExecNode condition;
+        private ExecNode whenTrue;
+        private ExecNode whenFalse;
+
+        public Ternary(ExecNode condition, ExecNode whenTrue, ExecNode whenFalse) {
+            this.condition = condition;
+            this.whenTrue = whenTrue;
+            this.whenFalse = whenFalse;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            if (condition.executeCondition()) {
+                return whenTrue.execute();
+            }
+            return whenFalse.execute();
+        }
+    }
+
+    // ----------FUNCTION-CALLS----------
+
+    // A function defined in the program, ready to run. The body is filled in after
+    // the function is created, so that calls to it (including its own recursive
+    // calls) can be built before its body is.
+    public static class UserFunction {
+
+        private String name;
+        private int frameSize;
+        private ExecNode body;
+
+        public UserFunction(String name, int frameSize) {
+            this.name = name;
+            this.frameSize = frameSize;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getFrameSize() {
+            return frameSize;
+        }
+
+        public ExecNode getBody() {
+            return body;
+        }
+
+        public void setBody(ExecNode body) {
+            this.body = body;
+        }
+    }
+
+    public static class UserCall extends ExecNode {
+
+        private Interpreter interpreter;
+        private UserFunction function;
+        private ExecNode[] arguments;
+
+        public UserCall(Interpreter interpreter, UserFunction function, ExecNode[] arguments) {
+            this.interpreter = interpreter;
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return interpreter.callFunction(function, arguments);
+        }
+    }
+
+    // Calls to built-in functions, one class for each entry point of
+    // BuiltInFunction, so the arguments are passed without an array when there
+    // are few of them
+
+    public static class BuiltInCall0 extends ExecNode {
+
+        private BuiltInFunction function;
+
+        public BuiltInCall0(BuiltInFunction function) {
+            this.function = function;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return function.call0();
+        }
+    }
+
+    public static class BuiltInCall1 extends ExecNode {
+
+        private BuiltInFunction function;
+        private ExecNode first;
+
+        public BuiltInCall1(BuiltInFunction function, ExecNode first) {
+            this.function = function;
+            this.first = first;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            return function.call1(first.execute());
+        }
+    }
+
+    public static class BuiltInCall2 extends ExecNode {
+
+        private BuiltInFunction function;
+        private ExecNode first;
+        private ExecNode second;
+
+        public BuiltInCall2(BuiltInFunction function, ExecNode first, ExecNode second) {
+            this.function = function;
+            this.first = first;
+            this.second = second;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            InterpreterDataType firstValue = first.execute();
+            return function.call2(firstValue, second.execute());
+        }
+    }
+
+    public static class BuiltInCall3 extends ExecNode {
+
+        private BuiltInFunction function;
+        private ExecNode first;
+        private ExecNode second;
+        private ExecNode third;
+
+        public BuiltInCall3(BuiltInFunction function, ExecNode first, ExecNode second, ExecNode third) {
+            this.function = function;
+            this.first = first;
+            this.second = second;
+            this.third = third;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            InterpreterDataType firstValue = first.execute();
+            InterpreterDataType secondValue = second.execute();
+            return function.call3(firstValue, secondValue, third.execute());
+        }
+    }
+
+    public static class BuiltInCallN extends ExecNode {
+
+        private BuiltInFunction function;
+        private ExecNode[] arguments;
+
+        public BuiltInCallN(BuiltInFunction function, ExecNode[] arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        public InterpreterDataType execute() throws Exception {
+            InterpreterDataType[] values = new InterpreterDataType[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                values[i] = arguments[i].execute();
+            }
+            return function.callN(values);
+        }
+    }
+
+}
@@ -7,6 +7,11 @@ public class VariableReferenceNode extends Node {
     private String name;
     private Optional<Node> indexExp;
 
+    // Where the variable lives, filled in by VariableResolver: an index into the
+    // globals, or into the frame of the enclosing function when local is set
+    private int slot = -1;
+    private boolean local;
+
     public VariableReferenceNode(String name, Optional<Node> indexExp) {
         this.name = name;
         this.indexExp = indexExp;
@@ -16,6 +21,19 @@ public class VariableReferenceNode extends Node {
         return name;
     }
 
+    public void setSlot(int slot, boolean local) {
+        this.slot = slot;
+        this.local = local;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public boolean isLocal() {
+        return local;
+    }
+
     public Node getIndex() {
         if (indexExp.isPresent())
             return indexExp.get();
@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+//Gives every variable in a program a slot, so the interpreter can find it by
+//index instead of by name. Globals are numbered across the whole program, with
+//the built-in variables (NR, FS, etc.) always taking the first slots. Inside a
+//function, a name that is one of its parameters is given a slot in the
+//function's frame instead, numbered by the parameter's position. It also finds
+//which parameters of each function are arrays, so that callers pass their
+//arrays to them by reference.
+public class VariableResolver extends NodeWalker {
+
+    // Slots of the built-in variables, in the order of BUILT_IN_VARIABLES
+    public static final int FILENAME = 0;
+    public static final int OFMT = 1;
+    public static final int CONVFMT = 2;
+    public static final int OFS = 3;
+    public static final int ORS = 4;
+    public static final int FS = 5;
+    public static final int NF = 6;
+    public static final int NR = 7;
+    public static final int FNR = 8;
+
+    private static final String[] BUILT_IN_VARIABLES = { "FILENAME", "OFMT", "CONVFMT", "OFS", "ORS", "FS", "NF",
+            "NR", "FNR" };
+
+    private LinkedHashMap<String, Integer> globals;
+
+    // The function being walked and its parameters, or null outside of functions
+    private FunctionDefinitionNode function;
+    private HashMap<String, Integer> locals;
+
+    // Every parameter that a function passes on whole to a call, which is an
+    // array if the parameter it is passed to is one
+    private ArrayList<PassedParameter> passedParameters;
+
+    private static class PassedParameter {
+
+        private FunctionDefinitionNode caller;
+        private int slot;
+        private String callee;
+        private int position;
+
+        private PassedParameter(FunctionDefinitionNode caller, int slot, String callee, int position) {
+            this.caller = caller;
+            this.slot = slot;
+            this.callee = callee;
+            this.position = position;
+        }
+    }
+
+    public VariableResolver(ProgramNode program) {
+        globals = new LinkedHashMap<>();
+        passedParameters = new ArrayList<>();
+        for (String name : BUILT_IN_VARIABLES) {
+            globals.put(name, globals.size());
+        }
+        walk(program);
+        function = null;
+        locals = null;
+    }
+
+    protected void visit(Node node) {
+        if (node.getClass() == FunctionDefinitionNode.class) {
+            // Functions are walked after every block, and each one's parameters are
+            // visited before its statements
+            function = (FunctionDefinitionNode) node;
+            locals = new HashMap<>();
+            for (Node parameter : function.getParams()) {
+                locals.put(((VariableReferenceNode) parameter).getName(), locals.size());
+            }
+        } else if (node.getClass() == VariableReferenceNode.class) {
+            VariableReferenceNode variable = (VariableReferenceNode) node;
+            Integer slot = locals == null ? null : locals.get(variable.getName());
+            if (slot != null) {
+                variable.setSlot(slot, true);
+                if (variable.getIndex() != null) {
+                    function.setArrayParameter(slot);
+                }
+            } else {
+                variable.setSlot(getGlobalSlot(variable.getName()), false);
+            }
+        } else if (node.getClass() == FunctionCallNode.class && locals != null) {
+            FunctionCallNode call = (FunctionCallNode) node;
+            int position = 0;
+            for (Node argument : call.getParams()) {
+                if (argument.getClass() == VariableReferenceNode.class
+                        && ((VariableReferenceNode) argument).getIndex() == null) {
+                    Integer slot = locals.get(((VariableReferenceNode) argument).getName());
+                    if (slot != null) {
+                        passedParameters.add(new PassedParameter(function, slot, call.getName(), position));
+                    }
+                }
+                position++;
+            }
+        } else if (node.getClass() == DeleteNode.class) {
+            markArray(((DeleteNode) node).getArray());
+        } else if (node.getClass() == ForInNode.class) {
+            Node condition = ((ForInNode) node).getCondition();
+            if (condition.getClass() == OperationNode.class && ((OperationNode) condition).getRight().isPresent()) {
+                markArray(((OperationNode) condition).getRight().get());
+            }
+        }
+    }
+
+    // Records that a parameter of the current function is used as a whole array
+    private void markArray(Node node) {
+        if (locals != null && node.getClass() == VariableReferenceNode.class) {
+            Integer slot = locals.get(((VariableReferenceNode) node).getName());
+            if (slot != null) {
+                function.setArrayParameter(slot);
+            }
+        }
+    }
+
+    // Marks the parameters that are passed on to array parameters as arrays
+    // themselves, given every function the program can call, built-in ones
+    // included. Marking one can make the parameters passed on to it arrays in
+    // turn, so this goes on until a pass marks nothing new.
+    public void resolveArrayParameters(HashMap<String, FunctionDefinitionNode> functions) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (PassedParameter passed : passedParameters) {
+                FunctionDefinitionNode callee = functions.get(passed.callee);
+                if (callee != null && callee.isArrayParameter(passed.position)
+                        && !passed.caller.isArrayParameter(passed.slot)) {
+                    passed.caller.setArrayParameter(passed.slot);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    // Returns the slot of a global variable, giving it one if it has none yet
+    public int getGlobalSlot(String name) {
+        Integer slot = globals.get(name);
+        if (slot == null) {
+            slot = globals.size();
+            globals.put(name, slot);
+        }
+        return slot;
+    }
+
+    // Returns the number of global slots handed out so far
+    public int getGlobalCount() {
+        return globals.size();
+    }
+
+}
@@ -0,0 +1,30 @@
+//Splits records the way AWK does for the default FS of a single space: fields are
+//separated by runs of spaces, tabs, and newlines, and blanks at the start and end
+//of the record are ignored
+public class WhitespaceFieldSplitter implements FieldSplitter {
+
+    public int split(CharSequence text, FieldOffsets offsets, int limit) {
+        int count = 0;
+        int length = text.length();
+        int i = 0;
+        while (count < limit) {
+            while (i < length && isBlank(text.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            int start = i;
+            while (i < length && !isBlank(text.charAt(i))) {
+                i++;
+            }
+            count = offsets.add(count, start, i);
+        }
+        return count;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\n';
+    }
+
+}
@@ -0,0 +1,223 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+//Checks DfaRegex against java.util.regex on patterns where only one match can
+//start at each position, so that leftmost-longest and the first match that
+//backtracking finds agree, and checks the leftmost-longest matches themselves
+//where they don't.
+public class DfaRegexTest {
+
+    private static final String[] TEXTS = { "", "a", "abc", "aaa bbb ccc", "abcabcabc", "colour color colr",
+            "555-1234 and 555-9876", "foo bar foobaz barbaz", "x@y.com, someone@example.com", " \t lead and trail \t ",
+            "a.c abc a-c a\nc", "MixedCase_123 words-with-dashes" };
+
+    // Compares find(), and search() and end() from every position of the text,
+    // with java.util.regex
+    private static void assertSameAsJava(String pattern, String text) throws Exception {
+        DfaRegex regex = new DfaRegex(pattern);
+        Matcher matcher = Pattern.compile(pattern).matcher(text);
+        String message = pattern + " on \"" + text + "\"";
+        assertEquals(message, matcher.find(), regex.find(text));
+        for (int from = 0; from <= text.length(); from++) {
+            int start = regex.search(text, from);
+            if (matcher.find(from)) {
+                assertEquals(message + " from " + from, matcher.start(), start);
+                assertEquals(message + " from " + from, matcher.end(), regex.end());
+            } else {
+                assertEquals(message + " from " + from, -1, start);
+            }
+        }
+    }
+
+    private static void assertSameAsJava(String pattern) throws Exception {
+        for (String text : TEXTS) {
+            assertSameAsJava(pattern, text);
+        }
+    }
+
+    // Checks the first match in the text
+    private static void assertMatch(String pattern, String text, int start, int end) throws Exception {
+        DfaRegex regex = new DfaRegex(pattern);
+        assertEquals(pattern + " on \"" + text + "\"", start, regex.search(text, 0));
+        assertEquals(pattern + " on \"" + text + "\"", end, regex.end());
+    }
+
+    private static void assertUnsupported(String pattern) {
+        try {
+            new DfaRegex(pattern);
+        } catch (DfaRegex.UnsupportedException e) {
+            return;
+        }
+        throw new AssertionError(pattern + " should not be handled by the DFA");
+    }
+
+    // ----------AGAINST JAVA.UTIL.REGEX----------
+
+    @Test
+    public void literalsAndDot() throws Exception {
+        assertSameAsJava("abc");
+        assertSameAsJava("a.c");
+        assertSameAsJava("a\\.c");
+        assertSameAsJava("bbb");
+        assertSameAsJava("z");
+    }
+
+    @Test
+    public void quantifiers() throws Exception {
+        assertSameAsJava("ab*c");
+        assertSameAsJava("b+");
+        assertSameAsJava("colou?r");
+        assertSameAsJava("x*");
+        assertSameAsJava("(abc)+");
+        assertSameAsJava("a[^ ]*");
+    }
+
+    @Test
+    public void escapesAndClasses() throws Exception {
+        assertSameAsJava("\\d+");
+        assertSameAsJava("\\d{3}-\\d{4}");
+        assertSameAsJava("\\s+");
+        assertSameAsJava("\\w+@\\w+\\.com");
+        assertSameAsJava("[A-Z][a-z]+");
+        assertSameAsJava("\\W+");
+        assertSameAsJava("\\D\\S");
+    }
+
+    @Test
+    public void groupsAndAlternation() throws Exception {
+        assertSameAsJava("(foo|bar)baz");
+        assertSameAsJava("(col|fo)o");
+        assertSameAsJava("b(a|o)r");
+    }
+
+    // ----------LEFTMOST-LONGEST----------
+
+    @Test
+    public void takesTheLongestAlternative() throws Exception {
+        assertMatch("a|ab", "abcd", 0, 2);
+        assertMatch("sam|samwise", "samwise", 0, 7);
+        assertMatch("(a|ab)(c|bcd)", "abcd", 0, 4);
+    }
+
+    @Test
+    public void repeatsAsFarAsPossible() throws Exception {
+        assertMatch("(a|ab)*", "abab", 0, 4);
+        assertMatch("(a|ab)*c", "ababc", 0, 5);
+        assertMatch("x*", "yxx", 0, 0);
+    }
+
+    @Test
+    public void takesTheLeftmostStart() throws Exception {
+        assertMatch("b|abc", "zabc", 1, 4);
+        assertMatch("bc|abcd", "xxabcd", 2, 6);
+        assertMatch("c", "abcabc", 2, 3);
+    }
+
+    // ----------REPETITION COUNTS----------
+
+    @Test
+    public void expandsCounts() throws Exception {
+        assertSameAsJava("a{3}");
+        assertSameAsJava("b{2,}");
+        assertSameAsJava("c{1,2}");
+        assertSameAsJava("(abc){2}");
+        assertSameAsJava("(abc){0,2}x");
+        assertSameAsJava("\\d{2,3}");
+        assertMatch("a{2,4}", "aaaaaa", 0, 4);
+        assertMatch("a{0,1}b", "aab", 1, 3);
+    }
+
+    @Test
+    public void leavesLargeCountsToJava() {
+        assertUnsupported("a{101}");
+        assertUnsupported("a{1,1000}");
+        assertFalse(Regex.compile("a{101}") instanceof DfaRegex);
+    }
+
+    @Test
+    public void leavesBackreferencesAndLookaroundToJava() {
+        assertUnsupported("(a)\\1");
+        assertUnsupported("a(?=b)");
+        assertUnsupported("a*?");
+    }
+
+    // ----------ANCHORS----------
+
+    @Test
+    public void anchors() throws Exception {
+        assertSameAsJava("^a");
+        assertSameAsJava("c$");
+        assertSameAsJava("^abc$");
+        assertSameAsJava("^$");
+        assertSameAsJava("^a*");
+        assertSameAsJava("(^a|c$)");
+    }
+
+    @Test
+    public void anchorsOnlyMatchAtTheEnds() throws Exception {
+        DfaRegex regex = new DfaRegex("^a");
+        assertEquals(0, regex.search("aa", 0));
+        assertEquals(-1, regex.search("aa", 1));
+        assertTrue(new DfaRegex("^$").find(""));
+        assertFalse(new DfaRegex("^$").find("a"));
+        assertTrue(new DfaRegex("a*").find(""));
+        assertFalse(new DfaRegex("a").find(""));
+    }
+
+    // ----------CHARACTER CLASSES----------
+
+    @Test
+    public void overlappingAndAdjacentRanges() throws Exception {
+        assertSameAsJava("[a-cb-e]+");
+        assertSameAsJava("[a-bc-d]+");
+        assertSameAsJava("[cba]+");
+        assertSameAsJava("[a-a]");
+        assertSameAsJava("[\\dA-Fa-f]+");
+    }
+
+    @Test
+    public void negatedClasses() throws Exception {
+        assertSameAsJava("[^a-c]+");
+        assertSameAsJava("[^ ]+");
+        assertSameAsJava("[^\\d\\s]+");
+        assertSameAsJava("[^a-cb-e]");
+        assertSameAsJava("[^\u0000-\u007f]", "ascii and \u00e9\uffff");
+        assertSameAsJava("[^a]", "\u0000a\uffff");
+    }
+
+    // ----------DFA STATE LIMIT----------
+
+    // [ab]*a[ab]{12}b needs a DFA state for each of the 2^13 ways the last 13
+    // characters can be a or b, twice as many as a DFA keeps, so matching long
+    // random texts drops the states and makes them again over and over
+    @Test
+    public void matchesPastTheStateLimit() throws Exception {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            text.append(random.nextBoolean() ? 'a' : 'b');
+        }
+        String pattern = "[ab]*a[ab]{12}b";
+        DfaRegex regex = new DfaRegex(pattern);
+        for (int round = 0; round < 3; round++) {
+            for (int from = 0; from < text.length(); from += 997) {
+                String piece = text.substring(from, Math.min(text.length(), from + 2000));
+                Matcher matcher = Pattern.compile(pattern).matcher(piece);
+                boolean found = matcher.find();
+                assertEquals(found, regex.find(piece));
+                assertEquals(found ? matcher.start() : -1, regex.search(piece, 0));
+                if (found) {
+                    assertEquals(matcher.end(), regex.end());
+                }
+            }
+        }
+    }
+
+}
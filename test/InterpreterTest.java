@@ -0,0 +1,95 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+//Runs whole AWK programs, without input, through the tree interpreter and the
+//bytecode compiler, and checks what they print.
+public class InterpreterTest {
+
+    // Runs a program the given way and returns what it printed
+    private static String run(String program, Interpreter.ExecutionMode execution) throws Exception {
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true, "UTF-8"));
+        try {
+            Parser parser = new Parser(new Lexer(program).lex());
+            Interpreter interpreter = new Interpreter(new AstOptimizer().optimize(parser.parse()), "",
+                    Interpreter.InputMode.STREAM, execution);
+            interpreter.interpretProgram();
+            System.out.flush();
+        } finally {
+            System.setOut(out);
+        }
+        return new String(printed.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // Checks that a program prints the same lines whichever way it is run
+    private static void assertPrints(String expected, String program) throws Exception {
+        for (Interpreter.ExecutionMode execution : Interpreter.ExecutionMode.values()) {
+            assertEquals(execution + ": " + program, expected, run(program, execution));
+        }
+    }
+
+    // ----------FUNCTION CALLS----------
+
+    // Each call takes a frame on the stack, which starts with 256 slots; the call
+    // in the argument grows it while the argument is being evaluated, and the
+    // argument must still land in the stack that is in use afterwards
+    @Test
+    public void recursesPastTheInitialStackWithCallsInArguments() throws Exception {
+        assertPrints("200\n1000\n", "function id(n) { return n }\n"
+                + "function depth(n) { if (n <= 0) return 0; return 1 + depth(id(n) - 1) }\n"
+                + "BEGIN { print(depth(200)); print(depth(1000)) }\n");
+    }
+
+    // ----------COMPARISONS----------
+
+    // A comparison that has seen numbers goes on comparing numerically only while
+    // its operands stay numeric; string constants, which are never strnums, are
+    // compared as strings whatever came before
+    @Test
+    public void comparesAsStringsOnceTheOperandsStopBeingNumeric() throws Exception {
+        assertPrints("1 0 1\n", "function lt(a, b) { return a < b }\n"
+                + "BEGIN { print(lt(2, 10) \" \" lt(\"2\", \"10\") \" \" lt(2, 10)) }\n");
+    }
+
+    // The same when the other side can only produce a number, as n + 1 does: it
+    // is converted to a string once the comparison falls back
+    @Test
+    public void comparesWithANumericSideAsStringsOnceTheOtherStopsBeingNumeric() throws Exception {
+        assertPrints("1 0 1\n1 0 1\n", "function gt(a, n) { return a > n + 1 }\n"
+                + "function lt(a, n) { return n + 1 < a }\n"
+                + "BEGIN { print(gt(10, 1) \" \" gt(\"10\", 1) \" \" gt(\"abc\", 1)); "
+                + "print(lt(10, 1) \" \" lt(\"10\", 1) \" \" lt(\"abc\", 1)) }\n");
+    }
+
+    // ----------OUTPUT FORMAT----------
+
+    // Assigning OFMT again, to the same format or a new one, keeps print using
+    // whatever OFMT holds last
+    @Test
+    public void printsNumbersWithTheLatestOutputFormat() throws Exception {
+        assertPrints("3.14\n3.14\n3.1416\n", "BEGIN { x = 3.14159; OFMT = \"%.3g\"; print(x); "
+                + "OFMT = \"%.3g\"; print(x); OFMT = \"%.5g\"; print(x) }\n");
+    }
+
+    // ----------UNINITIALIZED VARIABLES----------
+
+    @Test
+    public void printsAnUnsetVariableAsAnEmptyLine() throws Exception {
+        assertPrints("\n", "BEGIN {\nprint x\n}\n");
+    }
+
+    // An unset variable is both "" and 0, in globals and in parameters that
+    // weren't passed
+    @Test
+    public void comparesAnUnsetVariableEqualToTheEmptyStringAndZero() throws Exception {
+        assertPrints("1\n1\n1\n1\n", "function f(p) { print(p == \"\"); print(p == 0) }\n"
+                + "BEGIN { print(x == \"\"); print(x == 0); f() }\n");
+    }
+
+}
@@ -0,0 +1,81 @@
+import java.util.Locale;
+import java.util.Random;
+
+//Times NumberConverter against String.format() on the formats programs usually
+//give OFMT and CONVFMT. Run it with "java -cp .\test-bin;.\bin
+//NumberConverterBenchmark" after compiling the tests; it prints the average time
+//of one conversion for each format, taken from the best of several rounds once
+//both have been warmed up.
+public class NumberConverterBenchmark {
+
+    private static final String[] FORMATS = { "%.6g", "%.2f", "%e", "%.10g" };
+
+    private static final int VALUES = 4096;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int ROUNDS = 5;
+    private static final int CONVERSIONS_PER_ROUND = 1_000_000;
+
+    // Summed lengths of everything converted, printed at the end so that none of
+    // the conversions can be optimized away
+    private static long sink;
+
+    public static void main(String[] args) {
+        double[] values = values(new Random(42));
+        System.out.println(String.format(Locale.ROOT, "%-8s %19s %19s %8s", "format", "converter ns/op",
+                "String.format ns/op", "speedup"));
+        for (String format : FORMATS) {
+            NumberConverter converter = new NumberConverter(format);
+            double converted = best(converter, format, values, false);
+            double formatted = best(converter, format, values, true);
+            System.out.println(String.format(Locale.ROOT, "%-8s %19.1f %19.1f %7.1fx", format, converted,
+                    formatted, formatted / converted));
+        }
+        System.out.println("(sink " + sink + ")");
+    }
+
+    // Returns non-integral values spread over the magnitudes programs tend to
+    // print, from prices and averages to very small and very large results
+    private static double[] values(Random random) {
+        double[] values = new double[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            double value;
+            do {
+                value = random.nextDouble() * Math.pow(10, random.nextInt(13) - 4);
+            } while (value == Math.rint(value));
+            values[i] = random.nextBoolean() ? value : -value;
+        }
+        return values;
+    }
+
+    // Returns the fewest nanoseconds one conversion took, averaged over a round,
+    // after the warmup rounds
+    private static double best(NumberConverter converter, String format, double[] values, boolean useFormat) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round(converter, format, values, useFormat);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            best = Math.min(best, round(converter, format, values, useFormat));
+        }
+        return (double) best / CONVERSIONS_PER_ROUND;
+    }
+
+    // Converts values for one round and returns how many nanoseconds it took
+    private static long round(NumberConverter converter, String format, double[] values, boolean useFormat) {
+        long length = 0;
+        long start = System.nanoTime();
+        if (useFormat) {
+            for (int i = 0; i < CONVERSIONS_PER_ROUND; i++) {
+                length += String.format(Locale.ROOT, format, values[i & (VALUES - 1)]).length();
+            }
+        } else {
+            for (int i = 0; i < CONVERSIONS_PER_ROUND; i++) {
+                length += converter.convert(values[i & (VALUES - 1)]).length();
+            }
+        }
+        long time = System.nanoTime() - start;
+        sink += length;
+        return time;
+    }
+
+}
@@ -0,0 +1,219 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+//Checks NumberConverter against String.format for the conversions it writes
+//itself. String.format is given the exact value of each double as a BigDecimal,
+//already rounded half to even to the digits the format keeps, so that it rounds
+//the true value like C's printf does, rather than the shortest decimal that
+//reads back as the double. C's %g has no counterpart in String.format, so it is
+//built from %e and %f by the rules of the C standard.
+public class NumberConverterTest {
+
+    private static final int SAMPLES = 2000;
+    private static final Pattern CONVERSION = Pattern.compile("%[-+ 0]*[0-9]*(?:\\.([0-9]+))?([eEf])");
+
+    // Random non-integral doubles of both signs and many magnitudes, the same
+    // ones for every run
+    private static double[] samples() {
+        Random random = new Random(7);
+        double[] samples = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            double value;
+            do {
+                value = random.nextDouble() * Math.pow(10, random.nextInt(30) - 12);
+            } while (value == Math.rint(value));
+            samples[i] = random.nextBoolean() ? value : -value;
+        }
+        return samples;
+    }
+
+    // Formats a double with a %f or %e format. For a BigDecimal, %e only writes
+    // the digits the exponent needs, where C writes at least two, so the %e
+    // formats compared this way have no width. A BigDecimal has no negative zero
+    // either, so a negative number that %f rounds to zero is written like -1 and
+    // its 1 made a 0, as C writes -0.000.
+    private static String format(String format, double value) {
+        Matcher conversion = CONVERSION.matcher(format);
+        conversion.find();
+        int precision = conversion.group(1) == null ? 6 : Integer.parseInt(conversion.group(1));
+        BigDecimal exact = new BigDecimal(value);
+        if (conversion.group(2).equals("f")) {
+            BigDecimal rounded = exact.setScale(precision, RoundingMode.HALF_EVEN);
+            if (value < 0 && rounded.signum() == 0) {
+                return String.format(Locale.ROOT, format, BigDecimal.ONE.negate().setScale(precision))
+                        .replaceFirst("1", "0");
+            }
+            return String.format(Locale.ROOT, format, rounded);
+        }
+        String result = String.format(Locale.ROOT, format,
+                exact.round(new MathContext(precision + 1, RoundingMode.HALF_EVEN)));
+        return result.replaceAll("([0-9][eE][+-])([0-9])(?![0-9])", "$10$2");
+    }
+
+    // Writes a number the way C's %.<precision>g does: %e if the exponent X that
+    // %e would give is below -4 or at least the precision P, %.<P-1-X>f
+    // otherwise, and no trailing zeros either way
+    private static String general(double value, int precision, boolean upper) {
+        int significant = precision == 0 ? 1 : precision;
+        String scientific = format("%." + (significant - 1) + (upper ? "E" : "e"), value);
+        int e = scientific.indexOf(upper ? 'E' : 'e');
+        int exponent = Integer.parseInt(scientific.substring(e + 1));
+        if (exponent < -4 || exponent >= significant) {
+            return stripZeros(scientific.substring(0, e)) + scientific.substring(e);
+        }
+        return stripZeros(format("%." + (significant - 1 - exponent) + "f", value));
+    }
+
+    private static String stripZeros(String number) {
+        if (number.indexOf('.') < 0) {
+            return number;
+        }
+        int end = number.length();
+        while (number.charAt(end - 1) == '0') {
+            end--;
+        }
+        if (number.charAt(end - 1) == '.') {
+            end--;
+        }
+        return number.substring(0, end);
+    }
+
+    // ----------CONVERSIONS----------
+
+    @Test
+    public void fixed() {
+        for (int precision = 0; precision <= 20; precision++) {
+            String format = "%." + precision + "f";
+            NumberConverter converter = new NumberConverter(format);
+            for (double value : samples()) {
+                assertEquals(format + " of " + value, format(format, value), converter.convert(value));
+            }
+        }
+    }
+
+    @Test
+    public void scientific() {
+        for (int precision = 0; precision <= 20; precision++) {
+            for (String format : new String[] { "%." + precision + "e", "%." + precision + "E" }) {
+                NumberConverter converter = new NumberConverter(format);
+                for (double value : samples()) {
+                    assertEquals(format + " of " + value, format(format, value), converter.convert(value));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void general() {
+        for (int precision = 0; precision <= 16; precision++) {
+            for (boolean upper : new boolean[] { false, true }) {
+                String format = "%." + precision + (upper ? "G" : "g");
+                NumberConverter converter = new NumberConverter(format);
+                for (double value : samples()) {
+                    assertEquals(format + " of " + value, general(value, precision, upper),
+                            converter.convert(value));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void defaultPrecision() {
+        NumberConverter converter = new NumberConverter("%g");
+        for (double value : samples()) {
+            assertEquals("%g of " + value, general(value, 6, false), converter.convert(value));
+        }
+        assertEquals(format("%f", 3.14159265), new NumberConverter("%f").convert(3.14159265));
+        assertEquals(format("%e", 3.14159265), new NumberConverter("%e").convert(3.14159265));
+        assertEquals("   3.142e+00", new NumberConverter("%12.3e").convert(3.14159265));
+    }
+
+    // %d truncates toward zero, and a number that truncates to 0 has no sign
+    @Test
+    public void integer() {
+        for (String format : new String[] { "%d", "%i", "%5d", "%-5d|", "%05d", "%+d" }) {
+            NumberConverter converter = new NumberConverter(format);
+            String reference = format.replace('i', 'd');
+            for (double value : samples()) {
+                if (Math.abs(value) < 1e18) {
+                    assertEquals(format + " of " + value, String.format(Locale.ROOT, reference, (long) value),
+                            converter.convert(value));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void flagsWidthAndText() {
+        for (String format : new String[] { "%10.3f", "%-10.3f|", "%+.2f", "% .2f", "%010.3f", "%+.4e", "% .2E",
+                "%+e", "value: %.2f units", "value: %.3e units" }) {
+            NumberConverter converter = new NumberConverter(format);
+            for (double value : samples()) {
+                assertEquals(format + " of " + value, format(format, value), converter.convert(value));
+            }
+        }
+    }
+
+    // ----------SPECIAL CASES----------
+
+    // Exact ties are rounded to even, as C does; String.format would round them
+    // up
+    @Test
+    public void roundsTiesToEven() {
+        assertEquals("0.12", new NumberConverter("%.2f").convert(0.125));
+        assertEquals("0.38", new NumberConverter("%.2f").convert(0.375));
+        assertEquals("2", new NumberConverter("%.0f").convert(2.5));
+        assertEquals("1.2e+00", new NumberConverter("%.1e").convert(1.25));
+        assertEquals("0.625", new NumberConverter("%.3g").convert(0.625));
+        assertEquals("0.62", new NumberConverter("%.2g").convert(0.625));
+    }
+
+    @Test
+    public void integralValuesAreIntegers() {
+        for (String format : new String[] { "%.6g", "%.2f", "%e", "%.30g", "%d" }) {
+            NumberConverter converter = new NumberConverter(format);
+            assertEquals("0", converter.convert(0));
+            assertEquals("42", converter.convert(42));
+            assertEquals("-7", converter.convert(-7));
+            assertEquals("100000000000000000", converter.convert(1e17));
+        }
+    }
+
+    @Test
+    public void nanAndInfinity() {
+        NumberConverter converter = new NumberConverter("%.6g");
+        assertEquals("nan", converter.convert(Double.NaN));
+        assertEquals("inf", converter.convert(Double.POSITIVE_INFINITY));
+        assertEquals("-inf", converter.convert(Double.NEGATIVE_INFINITY));
+    }
+
+    // A precision of 17 or more is enough to tell any two doubles apart. Instead
+    // of the digits C would write, which carry the error of the binary value
+    // (0.1 is 0.10000000000000001 with %.17g), the converter deliberately writes
+    // the shortest digits that read back as the same double.
+    @Test
+    public void highPrecisionIsShortestRoundTrip() {
+        NumberConverter converter = new NumberConverter("%.17g");
+        assertEquals("0.10000000000000001", general(0.1, 17, false));
+        assertEquals("0.1", converter.convert(0.1));
+        assertEquals("0.30000000000000004", converter.convert(0.1 + 0.2));
+        assertEquals("1e-07", converter.convert(1e-7));
+        assertEquals("0.1", new NumberConverter("%.30g").convert(0.1));
+        for (double value : samples()) {
+            String result = converter.convert(value);
+            assertEquals(result, value, Double.parseDouble(result), 0);
+            assertTrue(result, result.length() <= general(value, 17, false).length());
+        }
+    }
+
+}